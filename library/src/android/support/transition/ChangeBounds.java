@@ -20,18 +20,28 @@ import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.animation.ObjectAnimator;
 import android.animation.PropertyValuesHolder;
+import android.animation.ValueAnimator;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.support.transition.utils.BitmapPool;
+import android.support.transition.utils.BoundsAnimatorBatch;
+import android.support.transition.utils.ClipBitmapDrawable;
+import android.support.transition.utils.LayoutSuppressionCompat;
 import android.support.transition.utils.OverlayCompatibilityHelper;
+import android.support.transition.utils.PropertyKeyRegistry;
+import android.support.transition.utils.PropertyMap;
 import android.support.transition.utils.RectEvaluator;
+import android.support.transition.utils.ViewDrawable;
+import android.support.transition.utils.ViewLayerHelper;
+import android.view.SurfaceView;
+import android.view.TextureView;
 import android.view.View;
 import android.view.ViewGroup;
 
-import java.util.Map;
-
 /**
  * This transition captures the layout bounds of target views before and after
  * the scene change and animates those changes during the transition.
@@ -46,6 +56,14 @@ public class ChangeBounds extends Transition {
     private static final String PROPNAME_PARENT = "android:changeBounds:parent";
     private static final String PROPNAME_WINDOW_X = "android:changeBounds:windowX";
     private static final String PROPNAME_WINDOW_Y = "android:changeBounds:windowY";
+    private static final int PROPKEY_BOUNDS =
+            PropertyKeyRegistry.register(PROPNAME_BOUNDS);
+    private static final int PROPKEY_PARENT =
+            PropertyKeyRegistry.register(PROPNAME_PARENT);
+    private static final int PROPKEY_WINDOW_X =
+            PropertyKeyRegistry.register(PROPNAME_WINDOW_X);
+    private static final int PROPKEY_WINDOW_Y =
+            PropertyKeyRegistry.register(PROPNAME_WINDOW_Y);
     private static final String[] sTransitionProperties = {
             PROPNAME_BOUNDS,
             PROPNAME_PARENT,
@@ -55,7 +73,12 @@ public class ChangeBounds extends Transition {
 
     int[] tempLocation = new int[2];
     boolean mResizeClip = false;
+    boolean mTransform = false;
+    boolean mBatchAnimators = false;
+    // Batch of the bounds animators created by the current createAnimators() pass
+    private BoundsAnimatorBatch mBatch;
     boolean mReparent = false;
+    boolean mLiveReparenting = false;
     private static final String LOG_TAG = "ChangeBounds";
 
     private static RectEvaluator sRectEvaluator = new RectEvaluator();
@@ -69,6 +92,40 @@ public class ChangeBounds extends Transition {
         mResizeClip = resizeClip;
     }
 
+    /**
+     * Setting this flag tells ChangeBounds to leave views at their end bounds,
+     * and to animate their translation and scale instead, from the position
+     * and size of their start bounds. Unlike the bounds, which are laid out
+     * and redrawn on every frame, these are only render properties, and the
+     * view is drawn from a hardware layer while it animates. Its content is
+     * scaled rather than laid out at the intermediate sizes, which suits views
+     * that keep their aspect ratio, such as cards. This mode takes precedence
+     * over {@link #setResizeClip(boolean) resize-clip}.
+     *
+     * @param transform true if the transition should animate the translation
+     * and scale of target views instead of their bounds.
+     */
+    public void setTransform(boolean transform) {
+        mTransform = transform;
+    }
+
+    /**
+     * Setting this flag tells ChangeBounds to animate the bounds of all of its
+     * target views with a single ValueAnimator, rather than an ObjectAnimator
+     * per view, which saves their property lookups, timing and per-frame
+     * overhead when many views move at once, as in a grid reflow. Each view
+     * still has its own animator, which can be canceled or interrupted
+     * independently. This only applies to the default mode, not to the
+     * {@link #setTransform(boolean) transform} and
+     * {@link #setResizeClip(boolean) resize-clip} modes.
+     *
+     * @param batchAnimators true if the bounds of all target views should be
+     * animated together.
+     */
+    public void setBatchAnimators(boolean batchAnimators) {
+        mBatchAnimators = batchAnimators;
+    }
+
     /**
      * Setting this flag tells ChangeBounds to track the before/after parent
      * of every view using this transition. The flag is not enabled by
@@ -83,14 +140,48 @@ public class ChangeBounds extends Transition {
         mReparent = reparent;
     }
 
+    /**
+     * Setting this flag tells ChangeBounds to draw the views that change parent
+     * live while they move in the overlay, rather than from a snapshot taken
+     * when the animation is created. Live drawing needs no bitmap and keeps
+     * animated content moving, but draws the whole view on every frame, where
+     * a snapshot is only blitted. TextureView and SurfaceView are always
+     * snapshotted. This only applies when {@link #setReparent(boolean)} is set.
+     *
+     * @param liveReparenting true if views that change parent should be drawn
+     * live during the transition.
+     */
+    public void setLiveReparenting(boolean liveReparenting) {
+        mLiveReparenting = liveReparenting;
+    }
+
     private void captureValues(TransitionValues values) {
         View view = values.view;
-        values.values.put(PROPNAME_BOUNDS, new Rect(view.getLeft(), view.getTop(),
+        values.properties.put(PROPKEY_BOUNDS, new Rect(view.getLeft(), view.getTop(),
                 view.getRight(), view.getBottom()));
-        values.values.put(PROPNAME_PARENT, values.view.getParent());
+        values.properties.put(PROPKEY_PARENT, values.view.getParent());
         values.view.getLocationInWindow(tempLocation);
-        values.values.put(PROPNAME_WINDOW_X, tempLocation[0]);
-        values.values.put(PROPNAME_WINDOW_Y, tempLocation[1]);
+        values.properties.put(PROPKEY_WINDOW_X, tempLocation[0]);
+        values.properties.put(PROPKEY_WINDOW_Y, tempLocation[1]);
+    }
+
+    /**
+     * ChangeBounds relayouts its views on every frame, so a hardware layer
+     * would be redrawn anyway. In {@link #setTransform(boolean) transform}
+     * mode, it puts its views on a hardware layer itself.
+     */
+    @Override
+    protected boolean canUseHardwareLayer(View view) {
+        return false;
+    }
+
+    @Override
+    protected void createAnimators(ViewGroup sceneRoot, TransitionValuesMaps startValues,
+            TransitionValuesMaps endValues) {
+        mBatch = null;
+        super.createAnimators(sceneRoot, startValues, endValues);
+        // The animators of this pass keep the batch, the next pass starts a new one
+        mBatch = null;
     }
 
     @Override
@@ -103,16 +194,236 @@ public class ChangeBounds extends Transition {
         captureValues(transitionValues);
     }
 
+    /**
+     * Emulates the clip bounds animation of the resize-clip mode before API 18:
+     * the view is hidden, and a snapshot of it, clipped to the animated size,
+     * follows its translation in the overlay.
+     */
+    private static void addClipCompat(ObjectAnimator anim, final View view,
+            final int startWidth, final int startHeight, int endWidth, int endHeight) {
+        final View parent = (View) view.getParent();
+        final Bitmap bitmap = BitmapPool.getInstance().acquire(view.getWidth(),
+                view.getHeight(), Bitmap.Config.ARGB_8888);
+        view.draw(new Canvas(bitmap));
+        final ClipBitmapDrawable drawable = new ClipBitmapDrawable(view.getResources(), bitmap);
+        final int widthDelta = endWidth - startWidth;
+        final int heightDelta = endHeight - startHeight;
+        anim.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator animation) {
+                float fraction = animation.getAnimatedFraction();
+                int left = view.getLeft() + (int) view.getTranslationX();
+                int top = view.getTop() + (int) view.getTranslationY();
+                drawable.setBounds(left, top, left + bitmap.getWidth(), top + bitmap.getHeight());
+                drawable.setClipBounds(0, 0, startWidth + (int) (widthDelta * fraction),
+                        startHeight + (int) (heightDelta * fraction));
+            }
+        });
+        anim.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationStart(Animator animation) {
+                int left = view.getLeft() + (int) view.getTranslationX();
+                int top = view.getTop() + (int) view.getTranslationY();
+                drawable.setBounds(left, top, left + bitmap.getWidth(), top + bitmap.getHeight());
+                drawable.setClipBounds(0, 0, startWidth, startHeight);
+                OverlayCompatibilityHelper.addDrawableOverlay(parent, drawable);
+                view.setVisibility(View.INVISIBLE);
+            }
+
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                OverlayCompatibilityHelper.removeDrawableOverlay(parent, drawable);
+                view.setVisibility(View.VISIBLE);
+                BitmapPool.getInstance().release(bitmap);
+            }
+        });
+    }
+
+    /**
+     * Creates the animator of the transform mode: the view stays at its end
+     * bounds, and its translation and scale go from the values that make it
+     * cover its start bounds to their current values.
+     */
+    private static Animator createTransformAnimator(final View view, Rect startBounds,
+            Rect endBounds) {
+        final float translationX = view.getTranslationX();
+        final float translationY = view.getTranslationY();
+        final float scaleX = view.getScaleX();
+        final float scaleY = view.getScaleY();
+        float scaleRatioX = (float) startBounds.width() / endBounds.width();
+        float scaleRatioY = (float) startBounds.height() / endBounds.height();
+        // The view is scaled around its pivot, which moves its left and top
+        float startTranslationX = translationX + startBounds.left - endBounds.left -
+                view.getPivotX() * (1 - scaleRatioX);
+        float startTranslationY = translationY + startBounds.top - endBounds.top -
+                view.getPivotY() * (1 - scaleRatioY);
+        float startScaleX = scaleX * scaleRatioX;
+        float startScaleY = scaleY * scaleRatioY;
+        int numChanges = 0;
+        if (startTranslationX != translationX) numChanges++;
+        if (startTranslationY != translationY) numChanges++;
+        if (startScaleX != scaleX) numChanges++;
+        if (startScaleY != scaleY) numChanges++;
+        PropertyValuesHolder pvh[] = new PropertyValuesHolder[numChanges];
+        int pvhIndex = 0;
+        if (startTranslationX != translationX) {
+            view.setTranslationX(startTranslationX);
+            pvh[pvhIndex++] = PropertyValuesHolder.ofFloat("translationX",
+                    startTranslationX, translationX);
+        }
+        if (startTranslationY != translationY) {
+            view.setTranslationY(startTranslationY);
+            pvh[pvhIndex++] = PropertyValuesHolder.ofFloat("translationY",
+                    startTranslationY, translationY);
+        }
+        if (startScaleX != scaleX) {
+            view.setScaleX(startScaleX);
+            pvh[pvhIndex++] = PropertyValuesHolder.ofFloat("scaleX", startScaleX, scaleX);
+        }
+        if (startScaleY != scaleY) {
+            view.setScaleY(startScaleY);
+            pvh[pvhIndex++] = PropertyValuesHolder.ofFloat("scaleY", startScaleY, scaleY);
+        }
+        ObjectAnimator anim = ObjectAnimator.ofPropertyValuesHolder(view, pvh);
+        anim.addListener(new AnimatorListenerAdapter() {
+            boolean mLayerAcquired;
+
+            @Override
+            public void onAnimationStart(Animator animation) {
+                if (ViewLayerHelper.isLayerPossible(view)) {
+                    ViewLayerHelper.acquireLayer(view);
+                    mLayerAcquired = true;
+                }
+            }
+
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                // Also called after onAnimationCancel()
+                view.setTranslationX(translationX);
+                view.setTranslationY(translationY);
+                view.setScaleX(scaleX);
+                view.setScaleY(scaleY);
+                if (mLayerAcquired) {
+                    ViewLayerHelper.releaseLayer(view);
+                    mLayerAcquired = false;
+                }
+            }
+        });
+        return anim;
+    }
+
+    /**
+     * Creates the animator of the reparenting mode: the view is hidden, and a
+     * drawable showing it, either live or from a pooled snapshot, moves and
+     * resizes in the overlay of the scene root from its start to its end
+     * position. The bounds are interpolated into the drawable without
+     * allocating on each frame.
+     */
+    private Animator createReparentAnimator(final ViewGroup sceneRoot, final View view,
+            final int startLeft, final int startTop, final int startWidth, final int startHeight,
+            final int endLeft, final int endTop, final int endWidth, final int endHeight) {
+        final Bitmap bitmap;
+        final Drawable drawable;
+        if (mLiveReparenting && !(view instanceof TextureView) && !(view instanceof SurfaceView)) {
+            bitmap = null;
+            drawable = new ViewDrawable(view);
+        } else {
+            bitmap = BitmapPool.getInstance().acquire(view.getWidth(), view.getHeight(),
+                    Bitmap.Config.ARGB_8888);
+            if (view instanceof TextureView) {
+                ((TextureView) view).getBitmap(bitmap);
+            } else {
+                view.draw(new Canvas(bitmap));
+            }
+            drawable = new BitmapDrawable(sceneRoot.getContext().getResources(), bitmap);
+        }
+        drawable.setBounds(startLeft, startTop, startLeft + startWidth, startTop + startHeight);
+        view.setVisibility(View.INVISIBLE);
+
+        OverlayCompatibilityHelper.addViewOverlay(sceneRoot, drawable);
+
+        ValueAnimator anim = ValueAnimator.ofFloat(0, 1);
+        anim.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator animation) {
+                float fraction = animation.getAnimatedFraction();
+                int left = startLeft + (int) (fraction * (endLeft - startLeft));
+                int top = startTop + (int) (fraction * (endTop - startTop));
+                int width = startWidth + (int) (fraction * (endWidth - startWidth));
+                int height = startHeight + (int) (fraction * (endHeight - startHeight));
+                drawable.setBounds(left, top, left + width, top + height);
+            }
+        });
+        anim.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                OverlayCompatibilityHelper.removeViewOverlay(sceneRoot, drawable);
+                view.setVisibility(View.VISIBLE);
+                if (bitmap != null) {
+                    BitmapPool.getInstance().release(bitmap);
+                }
+            }
+        });
+        return anim;
+    }
+
+    /**
+     * Suppresses the layout passes of the parent of an animated view while this
+     * transition runs, so that they do not override the animated bounds.
+     */
+    private void suppressLayout(final ViewGroup parent) {
+        LayoutSuppressionCompat.suppressLayout(parent);
+        addListener(new TransitionListenerAdapter() {
+            boolean mCanceled = false;
+            boolean mSuppressed = true;
+
+            private void setSuppressed(boolean suppressed) {
+                if (mSuppressed != suppressed) {
+                    mSuppressed = suppressed;
+                    if (suppressed) {
+                        LayoutSuppressionCompat.suppressLayout(parent);
+                    } else {
+                        LayoutSuppressionCompat.resumeLayout(parent);
+                    }
+                }
+            }
+
+            @Override
+            public void onTransitionCancel(Transition transition) {
+                setSuppressed(false);
+                mCanceled = true;
+            }
+
+            @Override
+            public void onTransitionEnd(Transition transition) {
+                setSuppressed(false);
+                transition.removeListener(this);
+            }
+
+            @Override
+            public void onTransitionPause(Transition transition) {
+                setSuppressed(false);
+            }
+
+            @Override
+            public void onTransitionResume(Transition transition) {
+                if (!mCanceled) {
+                    setSuppressed(true);
+                }
+            }
+        });
+    }
+
     @Override
     public Animator createAnimator(final ViewGroup sceneRoot, TransitionValues startValues,
                                    TransitionValues endValues) {
         if (startValues == null || endValues == null) {
             return null;
         }
-        Map<String, Object> startParentVals = startValues.values;
-        Map<String, Object> endParentVals = endValues.values;
-        ViewGroup startParent = (ViewGroup) startParentVals.get(PROPNAME_PARENT);
-        ViewGroup endParent = (ViewGroup) endParentVals.get(PROPNAME_PARENT);
+        PropertyMap startParentVals = startValues.properties;
+        PropertyMap endParentVals = endValues.properties;
+        ViewGroup startParent = (ViewGroup) startParentVals.get(PROPKEY_PARENT);
+        ViewGroup endParent = (ViewGroup) endParentVals.get(PROPKEY_PARENT);
         if (startParent == null || endParent == null) {
             return null;
         }
@@ -124,8 +435,8 @@ public class ChangeBounds extends Transition {
         // all parents in layouts have IDs to avoid layout-inflation resulting in a side-effect
         // of reparenting the views.
         if (!mReparent || parentsEqual) {
-            Rect startBounds = (Rect) startValues.values.get(PROPNAME_BOUNDS);
-            Rect endBounds = (Rect) endValues.values.get(PROPNAME_BOUNDS);
+            Rect startBounds = (Rect) startValues.properties.get(PROPKEY_BOUNDS);
+            Rect endBounds = (Rect) endValues.properties.get(PROPKEY_BOUNDS);
             int startLeft = startBounds.left;
             int endLeft = endBounds.left;
             int startTop = startBounds.top;
@@ -146,59 +457,44 @@ public class ChangeBounds extends Transition {
                 if (startBottom != endBottom) ++numChanges;
             }
             if (numChanges > 0) {
-                if (!mResizeClip) {
-                    PropertyValuesHolder pvh[] = new PropertyValuesHolder[numChanges];
-                    int pvhIndex = 0;
+                if (mTransform) {
+                    return createTransformAnimator(view, startBounds, endBounds);
+                } else if (!mResizeClip) {
                     if (startLeft != endLeft) view.setLeft(startLeft);
                     if (startTop != endTop) view.setTop(startTop);
                     if (startRight != endRight) view.setRight(startRight);
                     if (startBottom != endBottom) view.setBottom(startBottom);
-                    if (startLeft != endLeft) {
-                        pvh[pvhIndex++] = PropertyValuesHolder.ofInt("left", startLeft, endLeft);
-                    }
-                    if (startTop != endTop) {
-                        pvh[pvhIndex++] = PropertyValuesHolder.ofInt("top", startTop, endTop);
-                    }
-                    if (startRight != endRight) {
-                        pvh[pvhIndex++] = PropertyValuesHolder.ofInt("right",
-                                startRight, endRight);
-                    }
-                    if (startBottom != endBottom) {
-                        pvh[pvhIndex++] = PropertyValuesHolder.ofInt("bottom",
-                                startBottom, endBottom);
+                    Animator anim;
+                    if (mBatchAnimators) {
+                        if (mBatch == null) {
+                            mBatch = new BoundsAnimatorBatch();
+                        }
+                        anim = mBatch.add(view, startLeft, startTop, startRight, startBottom,
+                                endLeft, endTop, endRight, endBottom);
+                    } else {
+                        PropertyValuesHolder pvh[] = new PropertyValuesHolder[numChanges];
+                        int pvhIndex = 0;
+                        if (startLeft != endLeft) {
+                            pvh[pvhIndex++] = PropertyValuesHolder.ofInt("left",
+                                    startLeft, endLeft);
+                        }
+                        if (startTop != endTop) {
+                            pvh[pvhIndex++] = PropertyValuesHolder.ofInt("top",
+                                    startTop, endTop);
+                        }
+                        if (startRight != endRight) {
+                            pvh[pvhIndex++] = PropertyValuesHolder.ofInt("right",
+                                    startRight, endRight);
+                        }
+                        if (startBottom != endBottom) {
+                            pvh[pvhIndex++] = PropertyValuesHolder.ofInt("bottom",
+                                    startBottom, endBottom);
+                        }
+                        anim = ObjectAnimator.ofPropertyValuesHolder(view, pvh);
                     }
-                    ObjectAnimator anim = ObjectAnimator.ofPropertyValuesHolder(view, pvh);
                     if (view.getParent() instanceof ViewGroup) {
                         final ViewGroup parent = (ViewGroup) view.getParent();
-                        //TODO Suppress layout
-//                        parent.suppressLayout(true);
-//                        TransitionListener transitionListener = new TransitionListenerAdapter() {
-//                            boolean mCanceled = false;
-//
-//                            @Override
-//                            public void onTransitionCancel(Transition transition) {
-//                                parent.suppressLayout(false);
-//                                mCanceled = true;
-//                            }
-//
-//                            @Override
-//                            public void onTransitionEnd(Transition transition) {
-//                                if (!mCanceled) {
-//                                    parent.suppressLayout(false);
-//                                }
-//                            }
-//
-//                            @Override
-//                            public void onTransitionPause(Transition transition) {
-//                                parent.suppressLayout(false);
-//                            }
-//
-//                            @Override
-//                            public void onTransitionResume(Transition transition) {
-//                                parent.suppressLayout(true);
-//                            }
-//                        };
-//                        addListener(transitionListener);
+                        suppressLayout(parent);
                     }
                     return anim;
                 } else {
@@ -214,10 +510,14 @@ public class ChangeBounds extends Transition {
                     float transYDelta = endTop - startTop;
                     int widthDelta = endWidth - startWidth;
                     int heightDelta = endHeight - startHeight;
+                    // View.setClipBounds() only exists from API 18, before that
+                    // the view is replaced by a clipped snapshot in the overlay
+                    final boolean clipCompat = (widthDelta != 0 || heightDelta != 0) &&
+                            Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2;
                     numChanges = 0;
                     if (transXDelta != 0) numChanges++;
                     if (transYDelta != 0) numChanges++;
-                    if (widthDelta != 0 || heightDelta != 0) numChanges++;
+                    if ((widthDelta != 0 || heightDelta != 0) && !clipCompat) numChanges++;
                     PropertyValuesHolder pvh[] = new PropertyValuesHolder[numChanges];
                     int pvhIndex = 0;
                     if (transXDelta != 0) {
@@ -228,7 +528,7 @@ public class ChangeBounds extends Transition {
                         pvh[pvhIndex++] = PropertyValuesHolder.ofFloat("translationY",
                                 view.getTranslationY(), 0);
                     }
-                    if (widthDelta != 0 || heightDelta != 0) {
+                    if ((widthDelta != 0 || heightDelta != 0) && !clipCompat) {
                         Rect tempStartBounds = new Rect(0, 0, startWidth, startHeight);
                         Rect tempEndBounds = new Rect(0, 0, endWidth, endHeight);
                         pvh[pvhIndex++] = PropertyValuesHolder.ofObject("clipBounds",
@@ -237,84 +537,38 @@ public class ChangeBounds extends Transition {
                     ObjectAnimator anim = ObjectAnimator.ofPropertyValuesHolder(view, pvh);
                     if (view.getParent() instanceof ViewGroup) {
                         final ViewGroup parent = (ViewGroup) view.getParent();
-//                        parent.suppressLayout(true);
-//                        TransitionListener transitionListener = new TransitionListenerAdapter() {
-//                            boolean mCanceled = false;
-//
-//                            @Override
-//                            public void onTransitionCancel(Transition transition) {
-//                                parent.suppressLayout(false);
-//                                mCanceled = true;
-//                            }
-//
-//                            @Override
-//                            public void onTransitionEnd(Transition transition) {
-//                                if (!mCanceled) {
-//                                    parent.suppressLayout(false);
-//                                }
-//                            }
-//
-//                            @Override
-//                            public void onTransitionPause(Transition transition) {
-//                                parent.suppressLayout(false);
-//                            }
-//
-//                            @Override
-//                            public void onTransitionResume(Transition transition) {
-//                                parent.suppressLayout(true);
-//                            }
-//                        };
-//                        addListener(transitionListener);
+                        suppressLayout(parent);
                     }
-                    anim.addListener(new AnimatorListenerAdapter() {
-                        @Override
-                        public void onAnimationEnd(Animator animation) {
-                            if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
-                            {
+                    if (clipCompat) {
+                        addClipCompat(anim, view, startWidth, startHeight, endWidth, endHeight);
+                    } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                        anim.addListener(new AnimatorListenerAdapter() {
+                            @Override
+                            public void onAnimationEnd(Animator animation) {
                                 view.setClipBounds(null);
                             }
-                            else
-                            {
-                                //TODO
-                            }
-                        }
-                    });
+                        });
+                    }
                     return anim;
                 }
             }
         } else {
-            int startX = (Integer) startValues.values.get(PROPNAME_WINDOW_X);
-            int startY = (Integer) startValues.values.get(PROPNAME_WINDOW_Y);
-            int endX = (Integer) endValues.values.get(PROPNAME_WINDOW_X);
-            int endY = (Integer) endValues.values.get(PROPNAME_WINDOW_Y);
-            // TODO: also handle size changes: check bounds and animate size changes
-            if (startX != endX || startY != endY) {
+            int startX = (Integer) startValues.properties.get(PROPKEY_WINDOW_X);
+            int startY = (Integer) startValues.properties.get(PROPKEY_WINDOW_Y);
+            int endX = (Integer) endValues.properties.get(PROPKEY_WINDOW_X);
+            int endY = (Integer) endValues.properties.get(PROPKEY_WINDOW_Y);
+            Rect startBounds = (Rect) startValues.properties.get(PROPKEY_BOUNDS);
+            Rect endBounds = (Rect) endValues.properties.get(PROPKEY_BOUNDS);
+            if ((startX != endX || startY != endY ||
+                    startBounds.width() != endBounds.width() ||
+                    startBounds.height() != endBounds.height()) &&
+                    view.getWidth() > 0 && view.getHeight() > 0) {
                 sceneRoot.getLocationInWindow(tempLocation);
-                Bitmap bitmap = Bitmap.createBitmap(view.getWidth(), view.getHeight(),
-                        Bitmap.Config.ARGB_8888);
-                Canvas canvas = new Canvas(bitmap);
-                view.draw(canvas);
-                final BitmapDrawable drawable = new BitmapDrawable(sceneRoot.getContext().getResources(), bitmap);
-                view.setVisibility(View.INVISIBLE);
-
-                OverlayCompatibilityHelper.addViewOverlay(sceneRoot, drawable);
-
-                Rect startBounds1 = new Rect(startX - tempLocation[0], startY - tempLocation[1],
-                        startX - tempLocation[0] + view.getWidth(),
-                        startY - tempLocation[1] + view.getHeight());
-                Rect endBounds1 = new Rect(endX - tempLocation[0], endY - tempLocation[1],
-                        endX - tempLocation[0] + view.getWidth(),
-                        endY - tempLocation[1] + view.getHeight());
-                ObjectAnimator anim = ObjectAnimator.ofObject(drawable, "bounds",
-                        sRectEvaluator, startBounds1, endBounds1);
-                anim.addListener(new AnimatorListenerAdapter() {
-                    @Override
-                    public void onAnimationEnd(Animator animation) {
-                        OverlayCompatibilityHelper.removeViewOverlay(sceneRoot, drawable);
-                        view.setVisibility(View.VISIBLE);
-                    }
-                });
-                return anim;
+                return createReparentAnimator(sceneRoot, view,
+                        startX - tempLocation[0], startY - tempLocation[1],
+                        startBounds.width(), startBounds.height(),
+                        endX - tempLocation[0], endY - tempLocation[1],
+                        endBounds.width(), endBounds.height());
             }
         }
         return null;
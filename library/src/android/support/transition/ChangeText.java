@@ -21,13 +21,14 @@ import android.animation.AnimatorListenerAdapter;
 import android.animation.AnimatorSet;
 import android.animation.ValueAnimator;
 import android.graphics.Color;
+import android.support.transition.utils.PropertyKeyRegistry;
+import android.support.transition.utils.PropertyMap;
 import android.util.Log;
+import android.view.View;
 import android.view.ViewGroup;
 import android.widget.EditText;
 import android.widget.TextView;
 
-import java.util.Map;
-
 /**
  * This transition tracks changes to the text in TextView targets. If the text
  * changes between the start and end scenes, the transition ensures that the
@@ -47,6 +48,14 @@ public class ChangeText extends Transition {
     private static final String PROPNAME_TEXT_SELECTION_END =
             "android:textchange:textSelectionEnd";
     private static final String PROPNAME_TEXT_COLOR = "android:textchange:textColor";
+    private static final int PROPKEY_TEXT =
+            PropertyKeyRegistry.register(PROPNAME_TEXT);
+    private static final int PROPKEY_TEXT_SELECTION_START =
+            PropertyKeyRegistry.register(PROPNAME_TEXT_SELECTION_START);
+    private static final int PROPKEY_TEXT_SELECTION_END =
+            PropertyKeyRegistry.register(PROPNAME_TEXT_SELECTION_END);
+    private static final int PROPKEY_TEXT_COLOR =
+            PropertyKeyRegistry.register(PROPNAME_TEXT_COLOR);
 
     private int mChangeBehavior = CHANGE_BEHAVIOR_KEEP;
 
@@ -128,19 +137,28 @@ public class ChangeText extends Transition {
     private void captureValues(TransitionValues transitionValues) {
         if (transitionValues.view instanceof TextView) {
             TextView textview = (TextView) transitionValues.view;
-            transitionValues.values.put(PROPNAME_TEXT, textview.getText());
+            transitionValues.properties.put(PROPKEY_TEXT, textview.getText());
             if (textview instanceof EditText) {
-                transitionValues.values.put(PROPNAME_TEXT_SELECTION_START,
+                transitionValues.properties.put(PROPKEY_TEXT_SELECTION_START,
                         textview.getSelectionStart());
-                transitionValues.values.put(PROPNAME_TEXT_SELECTION_END,
+                transitionValues.properties.put(PROPKEY_TEXT_SELECTION_END,
                         textview.getSelectionEnd());
             }
             if (mChangeBehavior > CHANGE_BEHAVIOR_KEEP) {
-                transitionValues.values.put(PROPNAME_TEXT_COLOR, textview.getCurrentTextColor());
+                transitionValues.properties.put(PROPKEY_TEXT_COLOR, textview.getCurrentTextColor());
             }
         }
     }
 
+    /**
+     * ChangeText redraws its text views on every frame, so a hardware layer
+     * would be redrawn anyway.
+     */
+    @Override
+    protected boolean canUseHardwareLayer(View view) {
+        return false;
+    }
+
     @Override
     public void captureStartValues(TransitionValues transitionValues) {
         captureValues(transitionValues);
@@ -159,22 +177,22 @@ public class ChangeText extends Transition {
             return null;
         }
         final TextView view = (TextView) endValues.view;
-        Map<String, Object> startVals = startValues.values;
-        Map<String, Object> endVals = endValues.values;
-        final CharSequence startText = startVals.get(PROPNAME_TEXT) != null ?
-                (CharSequence) startVals.get(PROPNAME_TEXT) : "";
-        final CharSequence endText = endVals.get(PROPNAME_TEXT) != null ?
-                (CharSequence) endVals.get(PROPNAME_TEXT) : "";
+        PropertyMap startVals = startValues.properties;
+        PropertyMap endVals = endValues.properties;
+        final CharSequence startText = startVals.get(PROPKEY_TEXT) != null ?
+                (CharSequence) startVals.get(PROPKEY_TEXT) : "";
+        final CharSequence endText = endVals.get(PROPKEY_TEXT) != null ?
+                (CharSequence) endVals.get(PROPKEY_TEXT) : "";
         final int startSelectionStart, startSelectionEnd, endSelectionStart, endSelectionEnd;
         if (view instanceof EditText) {
-            startSelectionStart = startVals.get(PROPNAME_TEXT_SELECTION_START) != null ?
-                    (Integer) startVals.get(PROPNAME_TEXT_SELECTION_START) : -1;
-            startSelectionEnd = startVals.get(PROPNAME_TEXT_SELECTION_END) != null ?
-                    (Integer) startVals.get(PROPNAME_TEXT_SELECTION_END) : startSelectionStart;
-            endSelectionStart = endVals.get(PROPNAME_TEXT_SELECTION_START) != null ?
-                    (Integer) endVals.get(PROPNAME_TEXT_SELECTION_START) : -1;
-            endSelectionEnd = endVals.get(PROPNAME_TEXT_SELECTION_END) != null ?
-                    (Integer) endVals.get(PROPNAME_TEXT_SELECTION_END) : endSelectionStart;
+            startSelectionStart = startVals.get(PROPKEY_TEXT_SELECTION_START) != null ?
+                    (Integer) startVals.get(PROPKEY_TEXT_SELECTION_START) : -1;
+            startSelectionEnd = startVals.get(PROPKEY_TEXT_SELECTION_END) != null ?
+                    (Integer) startVals.get(PROPKEY_TEXT_SELECTION_END) : startSelectionStart;
+            endSelectionStart = endVals.get(PROPKEY_TEXT_SELECTION_START) != null ?
+                    (Integer) endVals.get(PROPKEY_TEXT_SELECTION_START) : -1;
+            endSelectionEnd = endVals.get(PROPKEY_TEXT_SELECTION_END) != null ?
+                    (Integer) endVals.get(PROPKEY_TEXT_SELECTION_END) : endSelectionStart;
         } else {
             startSelectionStart = startSelectionEnd = endSelectionStart = endSelectionEnd = -1;
         }
@@ -204,8 +222,8 @@ public class ChangeText extends Transition {
                     }
                 });
             } else {
-                startColor = (Integer) startVals.get(PROPNAME_TEXT_COLOR);
-                endColor = (Integer) endVals.get(PROPNAME_TEXT_COLOR);
+                startColor = (Integer) startVals.get(PROPKEY_TEXT_COLOR);
+                endColor = (Integer) endVals.get(PROPKEY_TEXT_COLOR);
                 // Fade out start text
                 ValueAnimator outAnim = null, inAnim = null;
                 if (mChangeBehavior == CHANGE_BEHAVIOR_OUT_IN ||
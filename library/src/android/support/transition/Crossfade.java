@@ -26,14 +26,16 @@ import android.graphics.Canvas;
 import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
 import android.os.Build;
+import android.support.transition.utils.BitmapPool;
+import android.support.transition.utils.IdentityArrayMap;
+import android.support.transition.utils.OverlayCompatibilityHelper;
+import android.support.transition.utils.PropertyKeyRegistry;
+import android.support.transition.utils.PropertyMap;
 import android.support.transition.utils.RectEvaluator;
 import android.util.Log;
 import android.view.TextureView;
 import android.view.View;
 import android.view.ViewGroup;
-import android.view.ViewOverlay;
-
-import java.util.Map;
 
 /**
  * This transition captures bitmap representations of target views before and
@@ -53,11 +55,35 @@ public class Crossfade extends Transition {
     private static final String PROPNAME_BITMAP = "android:crossfade:bitmap";
     private static final String PROPNAME_DRAWABLE = "android:crossfade:drawable";
     private static final String PROPNAME_BOUNDS = "android:crossfade:bounds";
+    private static final String PROPNAME_CHECKSUM = "android:crossfade:checksum";
+    private static final String PROPNAME_UNCHANGED = "android:crossfade:unchanged";
+    private static final int PROPKEY_BITMAP =
+            PropertyKeyRegistry.register(PROPNAME_BITMAP);
+    private static final int PROPKEY_DRAWABLE =
+            PropertyKeyRegistry.register(PROPNAME_DRAWABLE);
+    private static final int PROPKEY_BOUNDS =
+            PropertyKeyRegistry.register(PROPNAME_BOUNDS);
+    private static final int PROPKEY_CHECKSUM =
+            PropertyKeyRegistry.register(PROPNAME_CHECKSUM);
+    private static final int PROPKEY_UNCHANGED =
+            PropertyKeyRegistry.register(PROPNAME_UNCHANGED);
+
+    // Number of rows and columns of the pixel grid sampled for the snapshot checksums
+    private static final int CHECKSUM_GRID_SIZE = 8;
 
     private static RectEvaluator sRectEvaluator = new RectEvaluator();
 
     private int mFadeBehavior = FADE_BEHAVIOR_REVEAL;
     private int mResizeBehavior = RESIZE_BEHAVIOR_SCALE;
+    private float mSnapshotScale = 1;
+    private boolean mUseRgb565ForOpaqueViews = false;
+    private int mMaxSnapshotPixels = 0;
+    private boolean mSkipLargeEndSnapshots = false;
+    // Pixels used by the snapshots of the current start and end captures
+    private int mStartSnapshotPixels;
+    private int mEndSnapshotPixels;
+    // Values whose snapshots belong to an animator created in the current pass
+    private IdentityArrayMap<TransitionValues, SnapshotRelease> mSnapshotOwners;
 
     /**
      * Flag specifying that the fading animation should cross-fade
@@ -163,41 +189,210 @@ public class Crossfade extends Transition {
         return mResizeBehavior;
     }
 
+    /**
+     * Sets the scale at which target views are snapshotted. Scaling down the
+     * snapshots saves memory and drawing time, at the expense of sharpness,
+     * which is often acceptable since the snapshots are fading out. The default
+     * is 1, full resolution.
+     *
+     * @param snapshotScale The scale of the snapshots, greater than 0 and at most 1.
+     * @return This crossfade object.
+     */
+    public Crossfade setSnapshotScale(float snapshotScale) {
+        if (snapshotScale > 0 && snapshotScale <= 1) {
+            mSnapshotScale = snapshotScale;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the scale at which target views are snapshotted.
+     *
+     * @return The scale of the snapshots.
+     * @see #setSnapshotScale(float)
+     */
+    public float getSnapshotScale() {
+        return mSnapshotScale;
+    }
+
+    /**
+     * Sets whether views that are {@link android.view.View#isOpaque() opaque} are
+     * snapshotted in {@link android.graphics.Bitmap.Config#RGB_565}, which takes half
+     * the memory of {@link android.graphics.Bitmap.Config#ARGB_8888} but may show
+     * banding in gradients. The default is false.
+     *
+     * @param useRgb565ForOpaqueViews Whether to snapshot opaque views in RGB_565.
+     * @return This crossfade object.
+     */
+    public Crossfade setUseRgb565ForOpaqueViews(boolean useRgb565ForOpaqueViews) {
+        mUseRgb565ForOpaqueViews = useRgb565ForOpaqueViews;
+        return this;
+    }
+
+    /**
+     * Returns whether opaque views are snapshotted in RGB_565.
+     *
+     * @return Whether opaque views are snapshotted in RGB_565.
+     * @see #setUseRgb565ForOpaqueViews(boolean)
+     */
+    public boolean getUseRgb565ForOpaqueViews() {
+        return mUseRgb565ForOpaqueViews;
+    }
+
+    /**
+     * Sets the maximum number of pixels of the snapshots taken for the start
+     * scene, and again for the end scene, of a single run of this transition.
+     * Start snapshots that would go over the budget are scaled down to fit in
+     * what is left of it, and views are not snapshotted, and so not crossfaded,
+     * once it is used up. End snapshots are taken at the scale of the start
+     * snapshot of the same view, so that both can be compared, and are skipped
+     * if they do not fit. The default is 0, no limit.
+     *
+     * @param maxSnapshotPixels The maximum number of snapshot pixels, or 0 for
+     * no limit.
+     * @return This crossfade object.
+     */
+    public Crossfade setMaxSnapshotPixels(int maxSnapshotPixels) {
+        if (maxSnapshotPixels >= 0) {
+            mMaxSnapshotPixels = maxSnapshotPixels;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of snapshot pixels per scene.
+     *
+     * @return The maximum number of snapshot pixels, or 0 if there is no limit.
+     * @see #setMaxSnapshotPixels(int)
+     */
+    public int getMaxSnapshotPixels() {
+        return mMaxSnapshotPixels;
+    }
+
+    /**
+     * Sets whether the end snapshot of large views, covering at least half of
+     * their window, is skipped when the fade behavior animates the live view,
+     * that is with {@link #FADE_BEHAVIOR_CROSSFADE} and {@link #FADE_BEHAVIOR_OUT_IN}.
+     * The end snapshot is then only used to find out whether the view changed,
+     * so skipping it saves a large allocation and draw, but the crossfade runs
+     * even if the view did not change. The default is false.
+     *
+     * @param skipLargeEndSnapshots Whether to skip the end snapshot of large views.
+     * @return This crossfade object.
+     */
+    public Crossfade setSkipLargeEndSnapshots(boolean skipLargeEndSnapshots) {
+        mSkipLargeEndSnapshots = skipLargeEndSnapshots;
+        return this;
+    }
+
+    /**
+     * Returns whether the end snapshot of large views is skipped.
+     *
+     * @return Whether the end snapshot of large views is skipped.
+     * @see #setSkipLargeEndSnapshots(boolean)
+     */
+    public boolean getSkipLargeEndSnapshots() {
+        return mSkipLargeEndSnapshots;
+    }
+
     @Override
-    public Animator createAnimator(ViewGroup sceneRoot, TransitionValues startValues,
-                                   TransitionValues endValues) {
+    protected void createAnimators(ViewGroup sceneRoot, TransitionValuesMaps startValues,
+            TransitionValuesMaps endValues) {
+        mSnapshotOwners = new IdentityArrayMap<TransitionValues, SnapshotRelease>();
+        super.createAnimators(sceneRoot, startValues, endValues);
+        // Both scenes have been captured, start the pixel budgets over for the next run
+        mStartSnapshotPixels = 0;
+        mEndSnapshotPixels = 0;
+        // Values that were not matched, not compared or culled never reached an animator
+        releaseUnownedSnapshots(startValues);
+        releaseUnownedSnapshots(endValues);
+    }
+
+    @Override
+    protected void runAnimators() {
+        // Animators discarded in favor of running ones, or canceled before they
+        // could run, never end and would otherwise hold their snapshots forever
+        IdentityArrayMap<TransitionValues, SnapshotRelease> owners = mSnapshotOwners;
+        mSnapshotOwners = null;
+        if (owners != null) {
+            int numOwners = owners.size();
+            for (int i = 0; i < numOwners; ++i) {
+                SnapshotRelease release = owners.valueAt(i);
+                if (!isAnimatorPending(release.animator)) {
+                    release.run();
+                }
+            }
+        }
+        super.runAnimators();
+    }
+
+    @Override
+    protected void onValuesCulled(TransitionValues startValues, TransitionValues endValues) {
+        // An offscreen view is never faded, its snapshots can be reused right away
+        releaseSnapshots(startValues, endValues);
+    }
+
+    private void releaseUnownedSnapshots(TransitionValuesMaps values) {
+        int numViewValues = values.viewValues.size();
+        for (int i = 0; i < numViewValues; ++i) {
+            TransitionValues viewValues = values.viewValues.valueAt(i);
+            if (!mSnapshotOwners.containsKey(viewValues)) {
+                releaseSnapshots(viewValues, null);
+            }
+        }
+        int numItemIdValues = values.itemIdValues.size();
+        for (int i = 0; i < numItemIdValues; ++i) {
+            TransitionValues itemIdValues = values.itemIdValues.valueAt(i);
+            if (!mSnapshotOwners.containsKey(itemIdValues)) {
+                releaseSnapshots(itemIdValues, null);
+            }
+        }
+    }
+
+    @Override
+    public Animator createAnimator(ViewGroup sceneRoot, final TransitionValues startValues,
+                                   final TransitionValues endValues) {
         if (startValues == null || endValues == null) {
+            // Nothing to fade between, a lone snapshot is not needed
+            releaseSnapshots(startValues, endValues);
             return null;
         }
         final boolean useParentOverlay = mFadeBehavior != FADE_BEHAVIOR_REVEAL;
         final View view = endValues.view;
-        Map<String, Object> startVals = startValues.values;
-        Map<String, Object> endVals = endValues.values;
-        Rect startBounds = (Rect) startVals.get(PROPNAME_BOUNDS);
-        Rect endBounds = (Rect) endVals.get(PROPNAME_BOUNDS);
-        Bitmap startBitmap = (Bitmap) startVals.get(PROPNAME_BITMAP);
-        Bitmap endBitmap = (Bitmap) endVals.get(PROPNAME_BITMAP);
-        final BitmapDrawable startDrawable = (BitmapDrawable) startVals.get(PROPNAME_DRAWABLE);
-        final BitmapDrawable endDrawable = (BitmapDrawable) endVals.get(PROPNAME_DRAWABLE);
-        if (Transition.DBG) {
+        PropertyMap startVals = startValues.properties;
+        PropertyMap endVals = endValues.properties;
+        Rect startBounds = (Rect) startVals.get(PROPKEY_BOUNDS);
+        Rect endBounds = (Rect) endVals.get(PROPKEY_BOUNDS);
+        Bitmap startBitmap = (Bitmap) startVals.get(PROPKEY_BITMAP);
+        Bitmap endBitmap = (Bitmap) endVals.get(PROPKEY_BITMAP);
+        final BitmapDrawable startDrawable = (BitmapDrawable) startVals.get(PROPKEY_DRAWABLE);
+        final BitmapDrawable endDrawable = (BitmapDrawable) endVals.get(PROPKEY_DRAWABLE);
+        if (Transition.DBG && startBitmap != null) {
             Log.d(LOG_TAG, "StartBitmap.sameAs(endBitmap) = " + startBitmap.sameAs(endBitmap) +
                     " for start, end: " + startBitmap + ", " + endBitmap);
         }
-        if (startDrawable != null && endDrawable != null && !startBitmap.sameAs(endBitmap)) {
-            if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
-            {
-                ViewOverlay overlay = useParentOverlay ?
-                        ((ViewGroup) view.getParent()).getOverlay() : view.getOverlay();
-                if (mFadeBehavior == FADE_BEHAVIOR_REVEAL) {
-                    overlay.add(endDrawable);
-                }
-                overlay.add(startDrawable);
-            }
-            else
-            {
-                //TODO ViewOverlay
+        boolean changed;
+        if (startDrawable == null || endVals.get(PROPKEY_UNCHANGED) != null) {
+            changed = false;
+        } else if (endDrawable == null) {
+            // Without an end snapshot, the change cannot be checked, but the live view
+            // is animated with any fade behavior but REVEAL
+            changed = mFadeBehavior != FADE_BEHAVIOR_REVEAL;
+        } else if (startBitmap.getWidth() != endBitmap.getWidth() ||
+                startBitmap.getHeight() != endBitmap.getHeight() ||
+                !startVals.get(PROPKEY_CHECKSUM).equals(endVals.get(PROPKEY_CHECKSUM))) {
+            changed = true;
+        } else {
+            // The samples match, only a full comparison can tell
+            changed = !startBitmap.sameAs(endBitmap);
+        }
+        if (changed) {
+            // Before API 18, the drawables are drawn by the compat overlay of the window
+            final View overlayHost = useParentOverlay ? (View) view.getParent() : view;
+            if (mFadeBehavior == FADE_BEHAVIOR_REVEAL) {
+                OverlayCompatibilityHelper.addDrawableOverlay(overlayHost, endDrawable);
             }
-//
+            OverlayCompatibilityHelper.addDrawableOverlay(overlayHost, startDrawable);
             // The transition works by placing the end drawable under the start drawable and
             // gradually fading out the start drawable. So it's not really a cross-fade, but rather
             // a reveal of the end scene over time. Also, animate the bounds of both drawables
@@ -209,13 +404,16 @@ public class Crossfade extends Transition {
             } else {
                 anim = ObjectAnimator.ofInt(startDrawable, "alpha", 0);
             }
-            anim.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-                @Override
-                public void onAnimationUpdate(ValueAnimator animation) {
-                    // TODO: some way to auto-invalidate views based on drawable changes? callbacks?
-                    view.invalidate(startDrawable.getBounds());
-                }
-            });
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                // The compat overlay invalidates the drawables itself
+                anim.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+                    @Override
+                    public void onAnimationUpdate(ValueAnimator animation) {
+                        // TODO: some way to auto-invalidate views based on drawable changes? callbacks?
+                        view.invalidate(startDrawable.getBounds());
+                    }
+                });
+            }
             ObjectAnimator anim1 = null;
             if (mFadeBehavior == FADE_BEHAVIOR_OUT_IN) {
                 // start fading in halfway through the transition
@@ -227,25 +425,21 @@ public class Crossfade extends Transition {
                 Log.d(LOG_TAG, "Crossfade: created anim " + anim + " for start, end values " +
                         startValues + ", " + endValues);
             }
-            anim.addListener(new AnimatorListenerAdapter() {
+            AnimatorSet set = new AnimatorSet();
+            final SnapshotRelease release = new SnapshotRelease(set, overlayHost, startDrawable,
+                    mFadeBehavior == FADE_BEHAVIOR_REVEAL ? endDrawable : null,
+                    startValues, endValues);
+            // On the set, since canceling it in its start delay does not end its children
+            set.addListener(new AnimatorListenerAdapter() {
                 @Override
                 public void onAnimationEnd(Animator animation) {
-                    if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
-                    {
-                        ViewOverlay overlay = useParentOverlay ?
-                                ((ViewGroup) view.getParent()).getOverlay() : view.getOverlay();
-                        overlay.remove(startDrawable);
-                        if (mFadeBehavior == FADE_BEHAVIOR_REVEAL) {
-                            overlay.remove(endDrawable);
-                        }
-                    }
-                    else
-                    {
-                        //TODO ViewOverlay
-                    }
+                    release.run();
                 }
             });
-            AnimatorSet set = new AnimatorSet();
+            if (mSnapshotOwners != null) {
+                mSnapshotOwners.put(startValues, release);
+                mSnapshotOwners.put(endValues, release);
+            }
             set.playTogether(anim);
             if (anim1 != null) {
                 set.playTogether(anim1);
@@ -258,7 +452,7 @@ public class Crossfade extends Transition {
                 Animator anim2 = ObjectAnimator.ofObject(startDrawable, "bounds",
                         sRectEvaluator, startBounds, endBounds);
                 set.playTogether(anim2);
-                if (mResizeBehavior == RESIZE_BEHAVIOR_SCALE) {
+                if (mResizeBehavior == RESIZE_BEHAVIOR_SCALE && endDrawable != null) {
                     // TODO: How to handle resizing with a CROSSFADE (vs. REVEAL) effect
                     // when we are animating the view directly?
                     Animator anim3 = ObjectAnimator.ofObject(endDrawable, "bounds",
@@ -268,44 +462,233 @@ public class Crossfade extends Transition {
             }
             return set;
         } else {
+            // Nothing to animate, the snapshots can be reused right away
+            releaseSnapshots(startValues, endValues);
             return null;
         }
     }
 
-    private void captureValues(TransitionValues transitionValues) {
+    /**
+     * Gives the bitmaps captured for the given start and end values back to the
+     * {@link BitmapPool}.
+     */
+    private static void releaseSnapshots(TransitionValues startValues, TransitionValues endValues) {
+        BitmapPool bitmapPool = BitmapPool.getInstance();
+        Bitmap startBitmap = null;
+        Bitmap endBitmap = null;
+        if (startValues != null) {
+            startBitmap = (Bitmap) startValues.properties.remove(PROPKEY_BITMAP);
+            startValues.properties.remove(PROPKEY_DRAWABLE);
+        }
+        if (endValues != null) {
+            endBitmap = (Bitmap) endValues.properties.remove(PROPKEY_BITMAP);
+            endValues.properties.remove(PROPKEY_DRAWABLE);
+        }
+        if (startBitmap != null) {
+            bitmapPool.release(startBitmap);
+        }
+        if (endBitmap != null && endBitmap != startBitmap) {
+            bitmapPool.release(endBitmap);
+        }
+    }
+
+    private void captureValues(TransitionValues transitionValues, boolean start) {
         View view = transitionValues.view;
         Rect bounds = new Rect(0, 0, view.getWidth(), view.getHeight());
         if (mFadeBehavior != FADE_BEHAVIOR_REVEAL) {
             bounds.offset(view.getLeft(), view.getTop());
         }
-        transitionValues.values.put(PROPNAME_BOUNDS, bounds);
+        transitionValues.properties.put(PROPKEY_BOUNDS, bounds);
 
         if (Transition.DBG) {
-            Log.d(LOG_TAG, "Captured bounds " + transitionValues.values.get(PROPNAME_BOUNDS));
+            Log.d(LOG_TAG, "Captured bounds " + transitionValues.properties.get(PROPKEY_BOUNDS));
         }
-        Bitmap bitmap = Bitmap.createBitmap(view.getWidth(), view.getHeight(),
-                Bitmap.Config.ARGB_8888);
-        if (view instanceof TextureView) {
-            bitmap = ((TextureView) view).getBitmap();
-        } else {
-            Canvas c = new Canvas(bitmap);
-            view.draw(c);
+        if (!start && isUnchanged(view, bounds)) {
+            transitionValues.properties.put(PROPKEY_UNCHANGED, Boolean.TRUE);
+            return;
+        }
+        if (!start && mSkipLargeEndSnapshots && mFadeBehavior != FADE_BEHAVIOR_REVEAL &&
+                isLargeView(view)) {
+            return;
         }
-        transitionValues.values.put(PROPNAME_BITMAP, bitmap);
+        Bitmap bitmap = snapshot(view, start);
+        if (bitmap == null) {
+            return;
+        }
+        transitionValues.properties.put(PROPKEY_BITMAP, bitmap);
+        transitionValues.properties.put(PROPKEY_CHECKSUM, getChecksum(bitmap));
         // TODO: I don't have resources, can't call the non-deprecated method?
         BitmapDrawable drawable = new BitmapDrawable(bitmap);
         // TODO: lrtb will be wrong if the view has transXY set
         drawable.setBounds(bounds);
-        transitionValues.values.put(PROPNAME_DRAWABLE, drawable);
+        transitionValues.properties.put(PROPKEY_DRAWABLE, drawable);
+    }
+
+    /**
+     * Draws the view into a pooled bitmap, at the snapshot scale and within
+     * the pixel budget. Returns null if the view is empty or the budget is
+     * used up. End snapshots are taken at the scale of the start snapshot of
+     * the same view, and not at all if there is none to compare them with.
+     */
+    private Bitmap snapshot(View view, boolean start) {
+        int width = view.getWidth();
+        int height = view.getHeight();
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        int bitmapWidth;
+        int bitmapHeight;
+        if (start) {
+            float scale = mSnapshotScale;
+            if (mMaxSnapshotPixels > 0) {
+                int remainingPixels = mMaxSnapshotPixels - mStartSnapshotPixels;
+                float pixels = width * scale * height * scale;
+                if (remainingPixels <= 0) {
+                    return null;
+                } else if (pixels > remainingPixels) {
+                    scale *= (float) Math.sqrt(remainingPixels / pixels);
+                }
+            }
+            bitmapWidth = Math.max(1, (int) (width * scale));
+            bitmapHeight = Math.max(1, (int) (height * scale));
+            mStartSnapshotPixels += bitmapWidth * bitmapHeight;
+        } else {
+            // Scaling both snapshots of a view differently, as the budget may when
+            // it runs out at another view in each scene, would make them differ
+            TransitionValues startValues = getTransitionValues(view, true);
+            if (startValues == null || startValues.view != view) {
+                return null;
+            }
+            Bitmap startBitmap = (Bitmap) startValues.properties.get(PROPKEY_BITMAP);
+            if (startBitmap == null) {
+                return null;
+            }
+            Rect startBounds = (Rect) startValues.properties.get(PROPKEY_BOUNDS);
+            bitmapWidth = scaleLike(width, startBounds.width(), startBitmap.getWidth());
+            bitmapHeight = scaleLike(height, startBounds.height(), startBitmap.getHeight());
+            if (mMaxSnapshotPixels > 0 &&
+                    mEndSnapshotPixels + bitmapWidth * bitmapHeight > mMaxSnapshotPixels) {
+                return null;
+            }
+            mEndSnapshotPixels += bitmapWidth * bitmapHeight;
+        }
+        Bitmap bitmap;
+        if (view instanceof TextureView) {
+            // Let the TextureView copy its content straight into the pooled bitmap
+            bitmap = BitmapPool.getInstance().acquire(bitmapWidth, bitmapHeight,
+                    Bitmap.Config.ARGB_8888);
+            ((TextureView) view).getBitmap(bitmap);
+        } else {
+            Bitmap.Config config = mUseRgb565ForOpaqueViews && view.isOpaque() ?
+                    Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+            bitmap = BitmapPool.getInstance().acquire(bitmapWidth, bitmapHeight, config);
+            Canvas c = new Canvas(bitmap);
+            if (bitmapWidth != width || bitmapHeight != height) {
+                c.scale((float) bitmapWidth / width, (float) bitmapHeight / height);
+            }
+            view.draw(c);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Returns the snapshot size for a view dimension, scaled as the start
+     * snapshot was. An unchanged dimension gets the start size exactly.
+     */
+    private static int scaleLike(int size, int startSize, int startBitmapSize) {
+        if (size == startSize) {
+            return startBitmapSize;
+        }
+        return Math.max(1, (int) ((float) size * startBitmapSize / startSize));
+    }
+
+    /**
+     * Returns whether the view was snapshotted in the start scene and has not
+     * been invalidated nor moved since, in which case its end snapshot would be
+     * the same and is not needed.
+     */
+    private boolean isUnchanged(View view, Rect bounds) {
+        if (view.isDirty()) {
+            return false;
+        }
+        TransitionValues startValues = getTransitionValues(view, true);
+        return startValues != null && startValues.view == view &&
+                startValues.properties.get(PROPKEY_BITMAP) != null &&
+                bounds.equals(startValues.properties.get(PROPKEY_BOUNDS));
+    }
+
+    /**
+     * Computes a checksum of a grid of pixels sampled from the bitmap. Different
+     * checksums mean different bitmaps, which saves comparing all their pixels.
+     */
+    private static int getChecksum(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int checksum = 1;
+        for (int i = 0; i < CHECKSUM_GRID_SIZE; ++i) {
+            int y = (2 * i + 1) * height / (2 * CHECKSUM_GRID_SIZE);
+            for (int j = 0; j < CHECKSUM_GRID_SIZE; ++j) {
+                int x = (2 * j + 1) * width / (2 * CHECKSUM_GRID_SIZE);
+                checksum = 31 * checksum + bitmap.getPixel(x, y);
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Returns whether the view covers at least half of its window.
+     */
+    private static boolean isLargeView(View view) {
+        View rootView = view.getRootView();
+        return (long) view.getWidth() * view.getHeight() * 2 >=
+                (long) rootView.getWidth() * rootView.getHeight();
     }
 
     @Override
     public void captureStartValues(TransitionValues transitionValues) {
-        captureValues(transitionValues);
+        captureValues(transitionValues, true);
     }
 
     @Override
     public void captureEndValues(TransitionValues transitionValues) {
-        captureValues(transitionValues);
+        captureValues(transitionValues, false);
+    }
+
+    /**
+     * Takes the drawables of one animator off the overlay and releases its
+     * snapshots, once the animator ends or is known never to run.
+     */
+    private static class SnapshotRelease implements Runnable {
+        final Animator animator;
+        private final View mOverlayHost;
+        private final BitmapDrawable mStartDrawable;
+        private final BitmapDrawable mEndDrawable;
+        private final TransitionValues mStartValues;
+        private final TransitionValues mEndValues;
+        private boolean mReleased;
+
+        SnapshotRelease(Animator animator, View overlayHost, BitmapDrawable startDrawable,
+                BitmapDrawable endDrawable, TransitionValues startValues,
+                TransitionValues endValues) {
+            this.animator = animator;
+            mOverlayHost = overlayHost;
+            mStartDrawable = startDrawable;
+            mEndDrawable = endDrawable;
+            mStartValues = startValues;
+            mEndValues = endValues;
+        }
+
+        @Override
+        public void run() {
+            if (mReleased) {
+                return;
+            }
+            mReleased = true;
+            OverlayCompatibilityHelper.removeDrawableOverlay(mOverlayHost, mStartDrawable);
+            if (mEndDrawable != null) {
+                OverlayCompatibilityHelper.removeDrawableOverlay(mOverlayHost, mEndDrawable);
+            }
+            releaseSnapshots(mStartValues, mEndValues);
+        }
     }
 }
@@ -20,6 +20,7 @@ import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.animation.ObjectAnimator;
 import android.support.transition.utils.OverlayCompatibilityHelper;
+import android.support.transition.utils.PropertyKeyRegistry;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
@@ -62,6 +63,10 @@ public class Fade extends Visibility {
     private static final String LOG_TAG = "Fade";
     private static final String PROPNAME_SCREEN_X = "android:fade:screenX";
     private static final String PROPNAME_SCREEN_Y = "android:fade:screenY";
+    private static final int PROPKEY_SCREEN_X =
+            PropertyKeyRegistry.register(PROPNAME_SCREEN_X);
+    private static final int PROPKEY_SCREEN_Y =
+            PropertyKeyRegistry.register(PROPNAME_SCREEN_Y);
 
     /**
      * Fading mode used in {@link #Fade(int)} to make the transition
@@ -124,8 +129,8 @@ public class Fade extends Visibility {
     private void captureValues(TransitionValues transitionValues) {
         int[] loc = new int[2];
         transitionValues.view.getLocationOnScreen(loc);
-        transitionValues.values.put(PROPNAME_SCREEN_X, loc[0]);
-        transitionValues.values.put(PROPNAME_SCREEN_Y, loc[1]);
+        transitionValues.properties.put(PROPKEY_SCREEN_X, loc[0]);
+        transitionValues.properties.put(PROPKEY_SCREEN_Y, loc[1]);
     }
 
     @Override
@@ -245,8 +250,8 @@ public class Fade extends Visibility {
         // TODO: add automatic facility to Visibility superclass for keeping views around
         if (overlayView != null) {
             // TODO: Need to do this for general case of adding to overlay
-            int screenX = (Integer) startValues.values.get(PROPNAME_SCREEN_X);
-            int screenY = (Integer) startValues.values.get(PROPNAME_SCREEN_Y);
+            int screenX = (Integer) startValues.properties.get(PROPKEY_SCREEN_X);
+            int screenY = (Integer) startValues.properties.get(PROPKEY_SCREEN_Y);
 
             OverlayCompatibilityHelper.addViewOverlay(sceneRoot, overlayView, screenX, screenY);
 
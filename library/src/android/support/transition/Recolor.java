@@ -21,6 +21,7 @@ import android.animation.ArgbEvaluator;
 import android.animation.ObjectAnimator;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
+import android.support.transition.utils.PropertyKeyRegistry;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
@@ -40,15 +41,28 @@ public class Recolor extends Transition {
 
     private static final String PROPNAME_BACKGROUND = "android:recolor:background";
     private static final String PROPNAME_TEXT_COLOR = "android:recolor:textColor";
+    private static final int PROPKEY_BACKGROUND =
+            PropertyKeyRegistry.register(PROPNAME_BACKGROUND);
+    private static final int PROPKEY_TEXT_COLOR =
+            PropertyKeyRegistry.register(PROPNAME_TEXT_COLOR);
 
     private void captureValues(TransitionValues transitionValues) {
-        transitionValues.values.put(PROPNAME_BACKGROUND, transitionValues.view.getBackground());
+        transitionValues.properties.put(PROPKEY_BACKGROUND, transitionValues.view.getBackground());
         if (transitionValues.view instanceof TextView) {
-            transitionValues.values.put(PROPNAME_TEXT_COLOR,
+            transitionValues.properties.put(PROPKEY_TEXT_COLOR,
                     ((TextView)transitionValues.view).getCurrentTextColor());
         }
     }
 
+    /**
+     * Recolor redraws its views with a new color on every frame, so a hardware
+     * layer would be redrawn anyway.
+     */
+    @Override
+    protected boolean canUseHardwareLayer(View view) {
+        return false;
+    }
+
     @Override
     public void captureStartValues(TransitionValues transitionValues) {
         captureValues(transitionValues);
@@ -66,8 +80,8 @@ public class Recolor extends Transition {
             return null;
         }
         final View view = endValues.view;
-        Drawable startBackground = (Drawable) startValues.values.get(PROPNAME_BACKGROUND);
-        Drawable endBackground = (Drawable) endValues.values.get(PROPNAME_BACKGROUND);
+        Drawable startBackground = (Drawable) startValues.properties.get(PROPKEY_BACKGROUND);
+        Drawable endBackground = (Drawable) endValues.properties.get(PROPKEY_BACKGROUND);
         boolean changed = false;
         if (startBackground instanceof ColorDrawable && endBackground instanceof ColorDrawable) {
             ColorDrawable startColor = (ColorDrawable) startBackground;
@@ -81,8 +95,8 @@ public class Recolor extends Transition {
         }
         if (view instanceof TextView) {
             TextView textView = (TextView) view;
-            int start = (Integer) startValues.values.get(PROPNAME_TEXT_COLOR);
-            int end = (Integer) endValues.values.get(PROPNAME_TEXT_COLOR);
+            int start = (Integer) startValues.properties.get(PROPKEY_TEXT_COLOR);
+            int end = (Integer) endValues.properties.get(PROPKEY_TEXT_COLOR);
             if (start != end) {
                 textView.setTextColor(end);
                 changed = true;
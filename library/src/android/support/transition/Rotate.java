@@ -18,6 +18,7 @@ package android.support.transition;
 
 import android.animation.Animator;
 import android.animation.ObjectAnimator;
+import android.support.transition.utils.PropertyKeyRegistry;
 import android.view.View;
 import android.view.ViewGroup;
 
@@ -30,15 +31,17 @@ import android.view.ViewGroup;
 public class Rotate extends Transition {
 
     private static final String PROPNAME_ROTATION = "android:rotate:rotation";
+    private static final int PROPKEY_ROTATION =
+            PropertyKeyRegistry.register(PROPNAME_ROTATION);
 
     @Override
     public void captureStartValues(TransitionValues transitionValues) {
-        transitionValues.values.put(PROPNAME_ROTATION, transitionValues.view.getRotation());
+        transitionValues.properties.put(PROPKEY_ROTATION, transitionValues.view.getRotation());
     }
 
     @Override
     public void captureEndValues(TransitionValues transitionValues) {
-        transitionValues.values.put(PROPNAME_ROTATION, transitionValues.view.getRotation());
+        transitionValues.properties.put(PROPKEY_ROTATION, transitionValues.view.getRotation());
     }
 
     @Override
@@ -48,8 +51,8 @@ public class Rotate extends Transition {
             return null;
         }
         final View view = endValues.view;
-        float startRotation = (Float) startValues.values.get(PROPNAME_ROTATION);
-        float endRotation = (Float) endValues.values.get(PROPNAME_ROTATION);
+        float startRotation = (Float) startValues.properties.get(PROPKEY_ROTATION);
+        float endRotation = (Float) endValues.properties.get(PROPKEY_ROTATION);
         if (startRotation != endRotation) {
             view.setRotation(startRotation);
             return ObjectAnimator.ofFloat(view, View.ROTATION,
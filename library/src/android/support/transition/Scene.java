@@ -36,7 +36,6 @@ public final class Scene {
     private ViewGroup mSceneRoot;
     private ViewGroup mLayout; // alternative to layoutId
     Runnable mEnterAction, mExitAction;
-    private static ThreadLocal<SparseArray<Scene>> sScenes = new ThreadLocal<SparseArray<Scene>>();
 
     /**
      * Returns a Scene described by the resource file associated with the given
@@ -44,6 +43,8 @@ public final class Scene {
      * that same Scene will be returned. This caching of layoutId-based scenes enables
      * sharing of common scenes between those created in code and those referenced
      * by {@link android.transition.TransitionManager} XML resource files.
+     * Scenes are cached per scene root, so a recreated root (for example after
+     * a configuration change) gets its own scenes.
      *
      * @param sceneRoot The root of the hierarchy in which scene changes
      * and transitions will take place.
@@ -53,14 +54,17 @@ public final class Scene {
      * @return
      */
     public static Scene getSceneForLayout(ViewGroup sceneRoot, int layoutId, Context context) {
-        SparseArray<Scene> scenes = sScenes.get();
+        // Scenes are cached on the scene root itself, so that they go away with the
+        // root (and the Context it was inflated with) instead of outliving it.
+        @SuppressWarnings("unchecked")
+        SparseArray<Scene> scenes = (SparseArray<Scene>) sceneRoot.getTag(
+                com.guerwan.transitionsbackport.R.id.scene_layoutid_cache);
         if (scenes == null) {
             scenes = new SparseArray<Scene>();
-            sScenes.set(scenes);
+            sceneRoot.setTag(com.guerwan.transitionsbackport.R.id.scene_layoutid_cache, scenes);
         }
         Scene scene = scenes.get(layoutId);
         if (scene != null) {
-            scene.mSceneRoot = sceneRoot; //Fix when you recreate the same layout on configuration change
             return scene;
         } else {
             scene = new Scene(sceneRoot, layoutId, context);
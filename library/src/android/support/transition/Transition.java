@@ -19,11 +19,15 @@ package android.support.transition;
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.animation.TimeInterpolator;
-import android.support.v4.util.LongSparseArray;
+import android.graphics.Rect;
 import android.support.v4.view.ViewCompat;
 import android.support.transition.utils.ArrayMap;
+import android.support.transition.utils.IdentityArrayMap;
+import android.support.transition.utils.IntObjectMap;
+import android.support.transition.utils.LongObjectMap;
+import android.support.transition.utils.PropertyKeyRegistry;
+import android.support.transition.utils.ViewLayerHelper;
 import android.util.Log;
-import android.util.SparseArray;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ListView;
@@ -91,11 +95,42 @@ public abstract class Transition implements Cloneable {
     private static final String LOG_TAG = "Transition";
     static final boolean DBG = false;
 
+    /**
+     * With this layer policy, the default, the transition leaves the layer type
+     * of the views that it animates alone.
+     *
+     * @see #setLayerPolicy(int)
+     */
+    public static final int LAYER_POLICY_NONE = 0;
+
+    /**
+     * With this layer policy, the transition puts the views that it animates on
+     * a hardware layer when it is likely to pay off: hardware accelerated views
+     * with overlapping children, no larger than the display.
+     *
+     * @see #setLayerPolicy(int)
+     */
+    public static final int LAYER_POLICY_AUTO = 1;
+
+    /**
+     * With this layer policy, the transition puts all the hardware accelerated
+     * views that it animates on a hardware layer.
+     *
+     * @see #setLayerPolicy(int)
+     */
+    public static final int LAYER_POLICY_ALWAYS = 2;
+
     private String mName = ((Object)this).getClass().getName();
 
     long mStartDelay = -1;
     long mDuration = -1;
     TimeInterpolator mInterpolator = null;
+    int mLayerPolicy = LAYER_POLICY_NONE;
+    boolean mCullOffscreenTargets = false;
+    // Visible area of the scene root in window coordinates, for the capture in progress
+    private final Rect mCullRect = new Rect();
+    private final Rect mTempRect = new Rect();
+    private boolean mCullRectValid;
     ArrayList<Integer> mTargetIds = new ArrayList<Integer>();
     ArrayList<View> mTargets = new ArrayList<View>();
     ArrayList<Integer> mTargetIdExcludes = null;
@@ -104,8 +139,8 @@ public abstract class Transition implements Cloneable {
     ArrayList<Integer> mTargetIdChildExcludes = null;
     ArrayList<View> mTargetChildExcludes = null;
     ArrayList<Class> mTargetTypeChildExcludes = null;
-    private TransitionValuesMaps mStartValues = new TransitionValuesMaps();
-    private TransitionValuesMaps mEndValues = new TransitionValuesMaps();
+    TransitionValuesMaps mStartValues = new TransitionValuesMaps();
+    TransitionValuesMaps mEndValues = new TransitionValuesMaps();
     TransitionSet mParent = null;
 
     // Per-animator information used for later canceling when future transitions overlap
@@ -123,8 +158,13 @@ public abstract class Transition implements Cloneable {
     // removing them from parents to add them to overlays.
     boolean mCanRemoveViews = false;
 
-    // Track all animators in use in case the transition gets canceled and needs to
-    // cancel running animators
+    // Whether creating an animator for a view cancels the animators that other
+    // transitions are still running on that view, regardless of their end values.
+    // Set by TransitionManager for scene roots that retarget interrupted transitions.
+    boolean mRetargetRunningAnimators = false;
+
+    // Track all animators started, including those still in their start delay, in
+    // case the transition gets canceled and needs to cancel running animators
     private ArrayList<Animator> mCurrentAnimators = new ArrayList<Animator>();
 
     // Number of per-target instances of this Transition currently running. This count is
@@ -145,6 +185,10 @@ public abstract class Transition implements Cloneable {
     // to be run in runAnimators()
     ArrayList<Animator> mAnimators = new ArrayList<Animator>();
 
+    // Keys of the property names returned by getTransitionProperties(), and those names
+    private int[] mTransitionPropertyKeys;
+    private String[] mTransitionPropertyNames;
+
     /**
      * Constructs a Transition object with no target objects. A transition with
      * no targets defaults to running on all target objects in the scene hierarchy
@@ -234,6 +278,132 @@ public abstract class Transition implements Cloneable {
         return mInterpolator;
     }
 
+    /**
+     * Sets whether the views animated by this transition are put on a hardware
+     * layer while their animators run, so that animating properties such as
+     * alpha or translation does not redraw their whole content on every frame.
+     * The original layer type of the views is restored when the animators end
+     * or are canceled.
+     *
+     * <p>Transitions that change the content or the size of their views on
+     * every frame, for which a layer would be redrawn anyway, ignore this
+     * policy (see {@link #canUseHardwareLayer(android.view.View)}).</p>
+     *
+     * @param layerPolicy One of {@link #LAYER_POLICY_NONE}, the default,
+     * {@link #LAYER_POLICY_AUTO} or {@link #LAYER_POLICY_ALWAYS}.
+     * @return This transition object.
+     */
+    public Transition setLayerPolicy(int layerPolicy) {
+        if (layerPolicy < LAYER_POLICY_NONE || layerPolicy > LAYER_POLICY_ALWAYS) {
+            throw new IllegalArgumentException("Invalid layer policy: " + layerPolicy);
+        }
+        mLayerPolicy = layerPolicy;
+        return this;
+    }
+
+    /**
+     * Returns the layer policy set on this transition.
+     *
+     * @return One of {@link #LAYER_POLICY_NONE}, {@link #LAYER_POLICY_AUTO} or
+     * {@link #LAYER_POLICY_ALWAYS}.
+     * @see #setLayerPolicy(int)
+     */
+    public int getLayerPolicy() {
+        return mLayerPolicy;
+    }
+
+    /**
+     * Sets whether this transition skips the views that are entirely outside
+     * of the visible area of the scene root, both before and after the scene
+     * change, such as the views scrolled out of a list. No animator is created
+     * for them, and they simply appear in their end state, which saves the
+     * work of animating views that cannot be seen. Views that enter or leave
+     * the visible area are still animated.
+     *
+     * <p>Culling is off by default, since the visible area is only known when
+     * the values are captured: a view moved into sight by another animation
+     * while the transition runs would not be animated.</p>
+     *
+     * @param cullOffscreenTargets Whether to skip the offscreen targets.
+     * @return This transition object.
+     */
+    public Transition setCullOffscreenTargets(boolean cullOffscreenTargets) {
+        mCullOffscreenTargets = cullOffscreenTargets;
+        return this;
+    }
+
+    /**
+     * Returns whether this transition skips the views that stay outside of the
+     * visible area of the scene root.
+     *
+     * @return true if offscreen targets are culled, false otherwise.
+     * @see #setCullOffscreenTargets(boolean)
+     */
+    public boolean getCullOffscreenTargets() {
+        return mCullOffscreenTargets;
+    }
+
+    /**
+     * Records in the given values whether their view is entirely outside of
+     * the visible area of the scene root, when culling is on.
+     */
+    private void captureOffscreen(TransitionValues values) {
+        if (mCullRectValid) {
+            values.offscreen = !values.view.getGlobalVisibleRect(mTempRect) ||
+                    !Rect.intersects(mTempRect, mCullRect);
+        }
+    }
+
+    /**
+     * Returns whether the start and end values of a view, whichever exist,
+     * were all captured outside of the visible area of the scene root.
+     */
+    private boolean isCulled(TransitionValues start, TransitionValues end) {
+        return mCullOffscreenTargets && (start == null || start.offscreen) &&
+                (end == null || end.offscreen);
+    }
+
+    /**
+     * Called instead of {@link #createAnimator(ViewGroup, TransitionValues,
+     * TransitionValues)} for a view that is culled because it stays offscreen.
+     * Subclasses that hold on to resources in their captured values, such as
+     * bitmaps, can override this to release them. The default implementation
+     * does nothing.
+     *
+     * @param startValues The values for a culled view in the start scene, or
+     * null if the view does not exist in the start scene.
+     * @param endValues The values for a culled view in the end scene, or
+     * null if the view does not exist in the end scene.
+     * @see #setCullOffscreenTargets(boolean)
+     */
+    protected void onValuesCulled(TransitionValues startValues, TransitionValues endValues) {
+    }
+
+    /**
+     * Returns whether the animators of this transition may put the given view
+     * on a hardware layer, as allowed by the {@link #setLayerPolicy(int) layer
+     * policy}. Subclasses that redraw the view or change its size on every
+     * frame should return false.
+     *
+     * @param view The view animated by this transition.
+     * @return true by default.
+     */
+    protected boolean canUseHardwareLayer(View view) {
+        return true;
+    }
+
+    /**
+     * Returns whether the given view should be put on a hardware layer while
+     * this transition animates it.
+     */
+    private boolean shouldUseHardwareLayer(View view) {
+        if (view == null || mLayerPolicy == LAYER_POLICY_NONE || !canUseHardwareLayer(view)) {
+            return false;
+        }
+        return mLayerPolicy == LAYER_POLICY_ALWAYS ? ViewLayerHelper.isLayerPossible(view) :
+                ViewLayerHelper.isLayerWorthwhile(view);
+    }
+
     /**
      * Returns the set of property names used stored in the {@link android.support.transition.TransitionValues}
      * object passed into {@link #captureStartValues(android.support.transition.TransitionValues)} that
@@ -259,6 +429,27 @@ public abstract class Transition implements Cloneable {
         return null;
     }
 
+    /**
+     * Returns the keys registered in {@link PropertyKeyRegistry} for the names
+     * returned by {@link #getTransitionProperties()}. They are only looked up
+     * again when that method returns a different array.
+     */
+    private int[] getTransitionPropertyKeys() {
+        String[] properties = getTransitionProperties();
+        if (properties == null) {
+            return null;
+        }
+        if (properties != mTransitionPropertyNames) {
+            int[] propertyKeys = new int[properties.length];
+            for (int i = 0; i < properties.length; ++i) {
+                propertyKeys[i] = PropertyKeyRegistry.register(properties[i]);
+            }
+            mTransitionPropertyKeys = propertyKeys;
+            mTransitionPropertyNames = properties;
+        }
+        return mTransitionPropertyKeys;
+    }
+
     /**
      * This method creates an animation that will be run for this transition
      * given the information in the startValues and endValues structures captured
@@ -326,25 +517,21 @@ public abstract class Transition implements Cloneable {
         if (DBG) {
             Log.d(LOG_TAG, "createAnimators() for " + this);
         }
-        ArrayMap<View, TransitionValues> endCopy =
-                new ArrayMap<View, TransitionValues>(endValues.viewValues);
-        SparseArray<TransitionValues> endIdCopy =
-                new SparseArray<TransitionValues>(endValues.idValues.size());
-        for (int i = 0; i < endValues.idValues.size(); ++i) {
-            int id = endValues.idValues.keyAt(i);
-            endIdCopy.put(id, endValues.idValues.valueAt(i));
-        }
-        LongSparseArray<TransitionValues> endItemIdCopy =
-                new LongSparseArray<TransitionValues>(endValues.itemIdValues.size());
-        for (int i = 0; i < endValues.itemIdValues.size(); ++i) {
-            long id = endValues.itemIdValues.keyAt(i);
-            endItemIdCopy.put(id, endValues.itemIdValues.valueAt(i));
-        }
+        IdentityArrayMap<View, TransitionValues> endCopy =
+                new IdentityArrayMap<View, TransitionValues>(endValues.viewValues);
+        // Instead of copying the id maps, end values that have been matched are marked.
+        // The end maps are shared by the children of a TransitionSet, reset them first.
+        IntObjectMap<TransitionValues> endIdValues = endValues.idValues;
+        LongObjectMap<TransitionValues> endItemIdValues = endValues.itemIdValues;
+        endIdValues.clearMarks();
+        endItemIdValues.clearMarks();
         // Walk through the start values, playing everything we find
         // Remove from the end set as we go
         ArrayList<TransitionValues> startValuesList = new ArrayList<TransitionValues>();
         ArrayList<TransitionValues> endValuesList = new ArrayList<TransitionValues>();
-        for (View view : startValues.viewValues.keySet()) {
+        int startViewValuesSize = startValues.viewValues.size();
+        for (int i = 0; i < startViewValuesSize; ++i) {
+            View view = startValues.viewValues.keyAt(i);
             TransitionValues start = null;
             TransitionValues end = null;
             boolean isInListView = false;
@@ -353,24 +540,27 @@ public abstract class Transition implements Cloneable {
             }
             if (!isInListView) {
                 int id = view.getId();
-                start = startValues.viewValues.get(view) != null ?
-                        startValues.viewValues.get(view) : startValues.idValues.get(id);
-                if (endValues.viewValues.get(view) != null) {
-                    end = endValues.viewValues.get(view);
+                start = startValues.viewValues.valueAt(i);
+                if (start == null) {
+                    start = startValues.idValues.get(id);
+                }
+                end = endValues.viewValues.get(view);
+                if (end != null) {
                     endCopy.remove(view);
                 } else if (id != View.NO_ID) {
-                    end = endValues.idValues.get(id);
-                    View removeView = null;
-                    for (View viewToRemove : endCopy.keySet()) {
-                        if (viewToRemove.getId() == id) {
-                            removeView = viewToRemove;
+                    end = endIdValues.get(id);
+                    int removeIndex = -1;
+                    int endCopySize = endCopy.size();
+                    for (int j = 0; j < endCopySize; ++j) {
+                        if (endCopy.keyAt(j).getId() == id) {
+                            removeIndex = j;
                         }
                     }
-                    if (removeView != null) {
-                        endCopy.remove(removeView);
+                    if (removeIndex >= 0) {
+                        endCopy.removeAt(removeIndex);
                     }
                 }
-                endIdCopy.remove(id);
+                markKey(endIdValues, id);
                 if (isValidTarget(view, id)) {
                     startValuesList.add(start);
                     endValuesList.add(end);
@@ -381,7 +571,7 @@ public abstract class Transition implements Cloneable {
                     int position = parent.getPositionForView(view);
                     long itemId = parent.getItemIdAtPosition(position);
                     start = startValues.itemIdValues.get(itemId);
-                    endItemIdCopy.remove(itemId);
+                    markKey(endItemIdValues, itemId);
                     // TODO: deal with targetIDs for itemIDs for ListView items
                     startValuesList.add(start);
                     endValuesList.add(end);
@@ -392,44 +582,54 @@ public abstract class Transition implements Cloneable {
         for (int i = 0; i < startItemIdCopySize; ++i) {
             long id = startValues.itemIdValues.keyAt(i);
             if (isValidTarget(null, id)) {
-                TransitionValues start = startValues.itemIdValues.get(id);
-                TransitionValues end = endValues.itemIdValues.get(id);
-                endItemIdCopy.remove(id);
+                TransitionValues start = startValues.itemIdValues.valueAt(i);
+                TransitionValues end = endItemIdValues.get(id);
+                markKey(endItemIdValues, id);
                 startValuesList.add(start);
                 endValuesList.add(end);
             }
         }
         // Now walk through the remains of the end set
-        for (View view : endCopy.keySet()) {
+        int endCopySize = endCopy.size();
+        for (int i = 0; i < endCopySize; ++i) {
+            View view = endCopy.keyAt(i);
             int id = view.getId();
             if (isValidTarget(view, id)) {
                 TransitionValues start = startValues.viewValues.get(view) != null ?
                         startValues.viewValues.get(view) : startValues.idValues.get(id);
-                TransitionValues end = endCopy.get(view);
-                endIdCopy.remove(id);
+                TransitionValues end = endCopy.valueAt(i);
+                markKey(endIdValues, id);
                 startValuesList.add(start);
                 endValuesList.add(end);
             }
         }
-        int endIdCopySize = endIdCopy.size();
-        for (int i = 0; i < endIdCopySize; ++i) {
-            int id = endIdCopy.keyAt(i);
+        int endIdValuesSize = endIdValues.size();
+        for (int i = 0; i < endIdValuesSize; ++i) {
+            if (endIdValues.isMarkedAt(i)) {
+                continue;
+            }
+            int id = endIdValues.keyAt(i);
             if (isValidTarget(null, id)) {
                 TransitionValues start = startValues.idValues.get(id);
-                TransitionValues end = endIdCopy.get(id);
+                TransitionValues end = endIdValues.valueAt(i);
                 startValuesList.add(start);
                 endValuesList.add(end);
             }
         }
-        int endItemIdCopySize = endItemIdCopy.size();
-        for (int i = 0; i < endItemIdCopySize; ++i) {
-            long id = endItemIdCopy.keyAt(i);
+        int endItemIdValuesSize = endItemIdValues.size();
+        for (int i = 0; i < endItemIdValuesSize; ++i) {
+            if (endItemIdValues.isMarkedAt(i)) {
+                continue;
+            }
+            long id = endItemIdValues.keyAt(i);
             // TODO: Deal with targetIDs and itemIDs
             TransitionValues start = startValues.itemIdValues.get(id);
-            TransitionValues end = endItemIdCopy.get(id);
+            TransitionValues end = endItemIdValues.valueAt(i);
             startValuesList.add(start);
             endValuesList.add(end);
         }
+        endIdValues.clearMarks();
+        endItemIdValues.clearMarks();
         ArrayMap<Animator, AnimationInfo> runningAnimators = getRunningAnimators();
         for (int i = 0; i < startValuesList.size(); ++i) {
             TransitionValues start = startValuesList.get(i);
@@ -445,9 +645,11 @@ public abstract class Transition implements Cloneable {
                             Log.d(LOG_TAG, "    " + ((start == null) ?
                                     "start null, end non-null" : "start non-null, end null"));
                         } else {
-                            for (String key : start.values.keySet()) {
-                                Object startValue = start.values.get(key);
-                                Object endValue = end.values.get(key);
+                            int numValues = start.properties.size();
+                            for (int j = 0; j < numValues; ++j) {
+                                String key = start.properties.keyAt(j);
+                                Object startValue = start.properties.valueAt(j);
+                                Object endValue = end.properties.get(start.properties.propertyKeyAt(j));
                                 if (startValue != endValue && !startValue.equals(endValue)) {
                                     Log.d(LOG_TAG, "    " + key + ": start(" + startValue +
                                             "), end(" + endValue +")");
@@ -455,6 +657,13 @@ public abstract class Transition implements Cloneable {
                             }
                         }
                     }
+                    if (isCulled(start, end)) {
+                        if (DBG) {
+                            Log.d(LOG_TAG, "    culled offscreen view");
+                        }
+                        onValuesCulled(start, end);
+                        continue;
+                    }
                     // TODO: what to do about targetIds and itemIds?
                     Animator animator = createAnimator(sceneRoot, start, end);
                     if (animator != null) {
@@ -463,15 +672,15 @@ public abstract class Transition implements Cloneable {
                         TransitionValues infoValues = null;
                         if (end != null) {
                             view = end.view;
-                            String[] properties = getTransitionProperties();
-                            if (view != null && properties != null && properties.length > 0) {
+                            int[] propertyKeys = getTransitionPropertyKeys();
+                            if (view != null && propertyKeys != null && propertyKeys.length > 0) {
                                 infoValues = new TransitionValues();
                                 infoValues.view = view;
                                 TransitionValues newValues = endValues.viewValues.get(view);
                                 if (newValues != null) {
-                                    for (int j = 0; j < properties.length; ++j) {
-                                        infoValues.values.put(properties[j],
-                                                newValues.values.get(properties[j]));
+                                    for (int j = 0; j < propertyKeys.length; ++j) {
+                                        infoValues.properties.put(propertyKeys[j],
+                                                newValues.properties.get(propertyKeys[j]));
                                     }
                                 }
                                 int numExistingAnims = runningAnimators.size();
@@ -492,8 +701,12 @@ public abstract class Transition implements Cloneable {
                         } else {
                             view = (start != null) ? start.view : null;
                         }
+                        if (animator != null && mRetargetRunningAnimators && view != null) {
+                            cancelRunningAnimators(view, getRootTransition(), runningAnimators);
+                        }
                         if (animator != null) {
-                            AnimationInfo info = new AnimationInfo(view, getName(), infoValues);
+                            AnimationInfo info = new AnimationInfo(view, getName(), infoValues,
+                                    getRootTransition());
                             runningAnimators.put(animator, info);
                             mAnimators.add(animator);
                         }
@@ -503,6 +716,20 @@ public abstract class Transition implements Cloneable {
         }
     }
 
+    private static void markKey(IntObjectMap<TransitionValues> values, int key) {
+        int index = values.indexOfKey(key);
+        if (index >= 0) {
+            values.mark(index);
+        }
+    }
+
+    private static void markKey(LongObjectMap<TransitionValues> values, long key) {
+        int index = values.indexOfKey(key);
+        if (index >= 0) {
+            values.mark(index);
+        }
+    }
+
     /**
      * Internal utility method for checking whether a given view/id
      * is valid for this transition, where "valid" means that either
@@ -549,6 +776,46 @@ public abstract class Transition implements Cloneable {
         return false;
     }
 
+    /**
+     * Cancels every running animator that targets the given view, or forgets it
+     * if it has not been started yet. The animators created by the given root
+     * transition, that is by this transition or its sibling transitions in the
+     * current pass, are left alone.
+     */
+    private static void cancelRunningAnimators(View view, Transition rootTransition,
+            ArrayMap<Animator, AnimationInfo> runningAnimators) {
+        for (int i = runningAnimators.size() - 1; i >= 0; i--) {
+            if (i >= runningAnimators.size()) {
+                // Canceling an animator may have removed others
+                continue;
+            }
+            AnimationInfo info = runningAnimators.valueAt(i);
+            if (info != null && info.view == view && info.rootTransition != rootTransition) {
+                Animator anim = runningAnimators.keyAt(i);
+                if (anim.isRunning() || anim.isStarted()) {
+                    if (DBG) {
+                        Log.d(LOG_TAG, "Retargeting: canceling anim " + anim);
+                    }
+                    anim.cancel();
+                } else {
+                    runningAnimators.removeAt(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the topmost TransitionSet containing this transition, or this
+     * transition if it has no parent.
+     */
+    private Transition getRootTransition() {
+        Transition transition = this;
+        while (transition.mParent != null) {
+            transition = transition.mParent;
+        }
+        return transition;
+    }
+
     private static ArrayMap<Animator, AnimationInfo> getRunningAnimators() {
         ArrayMap<Animator, AnimationInfo> runningAnimators = sRunningAnimators.get();
         if (runningAnimators == null) {
@@ -571,7 +838,9 @@ public abstract class Transition implements Cloneable {
         start();
         ArrayMap<Animator, AnimationInfo> runningAnimators = getRunningAnimators();
         // Now start every Animator that was previously created for this transition
-        for (Animator anim : mAnimators) {
+        int numAnimators = mAnimators.size();
+        for (int i = 0; i < numAnimators; ++i) {
+            Animator anim = mAnimators.get(i);
             if (DBG) {
                 Log.d(LOG_TAG, "  anim: " + anim);
             }
@@ -584,25 +853,71 @@ public abstract class Transition implements Cloneable {
         end();
     }
 
+    /**
+     * Returns whether the given animator, created by this transition, is still
+     * going to be started by {@link #runAnimators()}. Animators discarded in
+     * favor of a running one, or canceled before they could run, are not.
+     */
+    boolean isAnimatorPending(Animator animator) {
+        return mAnimators.contains(animator) && getRunningAnimators().containsKey(animator);
+    }
+
     private void runAnimator(Animator animator,
             final ArrayMap<Animator, AnimationInfo> runningAnimators) {
         if (animator != null) {
             // TODO: could be a single listener instance for all of them since it uses the param
+            // Tracked from now on rather than from onAnimationStart(), which only comes
+            // after the start delay, so that cancel() also reaches delayed animators
+            mCurrentAnimators.add(animator);
             animator.addListener(new AnimatorListenerAdapter() {
-                @Override
-                public void onAnimationStart(Animator animation) {
-                    mCurrentAnimators.add(animation);
-                }
                 @Override
                 public void onAnimationEnd(Animator animation) {
                     runningAnimators.remove(animation);
                     mCurrentAnimators.remove(animation);
                 }
             });
+            AnimationInfo info = runningAnimators.get(animator);
+            final View view = info != null ? info.view : null;
+            if (shouldUseHardwareLayer(view)) {
+                animator.addListener(new AnimatorListenerAdapter() {
+                    boolean mLayerAcquired;
+
+                    @Override
+                    public void onAnimationStart(Animator animation) {
+                        ViewLayerHelper.acquireLayer(view);
+                        mLayerAcquired = true;
+                    }
+                    @Override
+                    public void onAnimationEnd(Animator animation) {
+                        // Also called after onAnimationCancel()
+                        if (mLayerAcquired) {
+                            ViewLayerHelper.releaseLayer(view);
+                            mLayerAcquired = false;
+                        }
+                        animation.removeListener(this);
+                    }
+                });
+            }
             animate(animator);
         }
     }
 
+    /**
+     * Ends this transition without running the animators created for it. This is
+     * used for transitions that are still waiting to run when their parent
+     * set is canceled; listeners still receive the start and end events.
+     */
+    void skipAnimators() {
+        start();
+        ArrayMap<Animator, AnimationInfo> runningAnimators = getRunningAnimators();
+        int numAnimators = mAnimators.size();
+        for (int i = 0; i < numAnimators; ++i) {
+            runningAnimators.remove(mAnimators.get(i));
+        }
+        mAnimators.clear();
+        end();
+    }
+
     /**
      * Captures the values in the start scene for the properties that this
      * transition monitors. These values are then passed as the startValues
@@ -991,15 +1306,14 @@ public abstract class Transition implements Cloneable {
      * false otherwise
      */
     void captureValues(ViewGroup sceneRoot, boolean start) {
-        if (start) {
-            mStartValues.viewValues.clear();
-            mStartValues.idValues.clear();
-            mStartValues.itemIdValues.clear();
-        } else {
-            mEndValues.viewValues.clear();
-            mEndValues.idValues.clear();
-            mEndValues.itemIdValues.clear();
-        }
+        TransitionValuesMaps valuesMaps = start ? mStartValues : mEndValues;
+        valuesMaps.viewValues.clear();
+        valuesMaps.idValues.clear();
+        valuesMaps.itemIdValues.clear();
+        // Each view is normally captured once, skip the duplicate check on every put
+        valuesMaps.viewValues.beginBatch();
+        // Without a visible scene root, there is nothing to compare the views to
+        mCullRectValid = mCullOffscreenTargets && sceneRoot.getGlobalVisibleRect(mCullRect);
         if (mTargetIds.size() > 0 || mTargets.size() > 0) {
             if (mTargetIds.size() > 0) {
                 for (int i = 0; i < mTargetIds.size(); ++i) {
@@ -1013,6 +1327,7 @@ public abstract class Transition implements Cloneable {
                         } else {
                             captureEndValues(values);
                         }
+                        captureOffscreen(values);
                         if (start) {
                             mStartValues.viewValues.put(view, values);
                             if (id >= 0) {
@@ -1038,6 +1353,7 @@ public abstract class Transition implements Cloneable {
                         } else {
                             captureEndValues(values);
                         }
+                        captureOffscreen(values);
                         if (start) {
                             mStartValues.viewValues.put(view, values);
                         } else {
@@ -1049,6 +1365,8 @@ public abstract class Transition implements Cloneable {
         } else {
             captureHierarchy(sceneRoot, start);
         }
+        valuesMaps.viewValues.endBatch();
+        mCullRectValid = false;
     }
 
     /**
@@ -1104,6 +1422,7 @@ public abstract class Transition implements Cloneable {
         } else {
             captureEndValues(values);
         }
+        captureOffscreen(values);
         if (start) {
             if (!isListViewItem) {
                 mStartValues.viewValues.put(view, values);
@@ -1237,6 +1556,17 @@ public abstract class Transition implements Cloneable {
      * runAnimations() to actually start the animations.
      */
     void playTransition(ViewGroup sceneRoot) {
+        prepareTransition(sceneRoot);
+        runAnimators();
+    }
+
+    /**
+     * Cancels running animators that this transition supersedes and creates the
+     * animators of this transition, without starting them. This is the first half
+     * of {@link #playTransition(android.view.ViewGroup)}, used by TransitionManager to start
+     * the transitions of several scene roots in the same frame.
+     */
+    void prepareTransition(ViewGroup sceneRoot) {
         ArrayMap<Animator, AnimationInfo> runningAnimators = getRunningAnimators();
         int numOldAnims = runningAnimators.size();
         for (int i = numOldAnims - 1; i >= 0; i--) {
@@ -1256,15 +1586,17 @@ public abstract class Transition implements Cloneable {
                         // if oldValues null, then transition didn't care to stash values,
                         // and won't get canceled
                         if (newValues != null) {
-                            for (String key : oldValues.values.keySet()) {
-                                Object oldValue = oldValues.values.get(key);
-                                Object newValue = newValues.values.get(key);
+                            int numOldValues = oldValues.properties.size();
+                            for (int j = 0; j < numOldValues; ++j) {
+                                Object oldValue = oldValues.properties.valueAt(j);
+                                Object newValue = newValues.properties.get(
+                                        oldValues.properties.propertyKeyAt(j));
                                 if (oldValue != null && newValue != null &&
                                         !oldValue.equals(newValue)) {
                                     cancel = true;
                                     if (DBG) {
                                         Log.d(LOG_TAG, "Transition.playTransition: " +
-                                                "oldValue != newValue for " + key +
+                                                "oldValue != newValue for " + oldValues.properties.keyAt(j) +
                                                 ": old, new = " + oldValue + ", " + newValue);
                                     }
                                     break;
@@ -1290,7 +1622,6 @@ public abstract class Transition implements Cloneable {
         }
 
         createAnimators(sceneRoot, mStartValues, mEndValues);
-        runAnimators();
     }
 
     /**
@@ -1396,11 +1727,21 @@ public abstract class Transition implements Cloneable {
      * @hide
      */
     protected void cancel() {
+        ArrayMap<Animator, AnimationInfo> runningAnimators = getRunningAnimators();
         int numAnimators = mCurrentAnimators.size();
         for (int i = numAnimators - 1; i >= 0; i--) {
             Animator animator = mCurrentAnimators.get(i);
             animator.cancel();
+            runningAnimators.remove(animator);
         }
+        mCurrentAnimators.clear();
+        // Animators created but not run yet, such as those of a later child of a
+        // sequential set, are dropped so that runAnimators() never starts them
+        int numPendingAnimators = mAnimators.size();
+        for (int i = 0; i < numPendingAnimators; i++) {
+            runningAnimators.remove(mAnimators.get(i));
+        }
+        mAnimators.clear();
         if (mListeners != null && mListeners.size() > 0) {
             ArrayList<TransitionListener> tmpListeners =
                     (ArrayList<TransitionListener>) mListeners.clone();
@@ -1454,6 +1795,10 @@ public abstract class Transition implements Cloneable {
         mCanRemoveViews = canRemoveViews;
     }
 
+    void setRetargetRunningAnimators(boolean retarget) {
+        mRetargetRunningAnimators = retarget;
+    }
+
     @Override
     public String toString() {
         return toString("");
@@ -1621,11 +1966,15 @@ public abstract class Transition implements Cloneable {
         View view;
         String name;
         TransitionValues values;
+        // The topmost transition of the pass that created the animator
+        Transition rootTransition;
 
-        AnimationInfo(View view, String name, TransitionValues values) {
+        AnimationInfo(View view, String name, TransitionValues values,
+                Transition rootTransition) {
             this.view = view;
             this.name = name;
             this.values = values;
+            this.rootTransition = rootTransition;
         }
     }
 
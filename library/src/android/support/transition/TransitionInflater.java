@@ -20,9 +20,10 @@ import android.content.Context;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.content.res.XmlResourceParser;
-import android.support.transition.utils.ArrayMap;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.AttributeSet;
-import android.util.SparseArray;
 import android.util.Xml;
 import android.view.InflateException;
 import android.view.ViewGroup;
@@ -32,6 +33,7 @@ import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.Executor;
 
 /**
  * This class inflates scenes and transitions from resource files.
@@ -43,31 +45,120 @@ import java.util.ArrayList;
  */
 public class TransitionInflater {
 
-    // We only need one inflater for any given context. Also, this allows us to associate
-    // ids with unique instances per-Context, used to avoid re-inflating
-    // already-inflated resources into new/different instances
-    private static final ArrayMap<Context, TransitionInflater> sInflaterMap =
-            new ArrayMap<Context, TransitionInflater>();
+    // Asynchronous inflation parses on the shared background executor and posts
+    // the results back to the main thread.
+    private static final Executor sInflateExecutor = AsyncTask.THREAD_POOL_EXECUTOR;
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
 
     private Context mContext;
-    // TODO: do we need id maps for transitions and transitionMgrs as well?
-    SparseArray<android.support.transition.Scene> mScenes = new SparseArray<android.support.transition.Scene>();
 
     private TransitionInflater(Context context) {
         mContext = context;
     }
 
     /**
-     * Obtains the TransitionInflater from the given context.
+     * Obtains the TransitionInflater from the given context. This method may be
+     * called from any thread.
+     *
+     * <p>Inflaters are not cached: an inflater holds no state besides its
+     * Context, and scenes are cached on their scene root, so a new inflater is
+     * as good as a shared one and nothing outlives the Context.</p>
      */
     public static TransitionInflater from(Context context) {
-        TransitionInflater inflater = sInflaterMap.get(context);
-        if (inflater != null) {
-            return inflater;
-        }
-        inflater = new TransitionInflater(context);
-        sInflaterMap.put(context, inflater);
-        return inflater;
+        return new TransitionInflater(context);
+    }
+
+    /**
+     * Loads a {@link android.support.transition.Transition} object from a resource on a
+     * background thread. The listener is called on the main thread once the
+     * transition has been inflated.
+     *
+     * <p>If the transition cannot be loaded, the exception that
+     * {@link #inflateTransition(int)} would have thrown is passed to
+     * {@link OnTransitionInflatedListener#onInflateFailed(Exception)} on the
+     * main thread.</p>
+     *
+     * @param resource The resource id of the transition to load
+     * @param listener The listener notified on the main thread with the loaded
+     * Transition object
+     */
+    public void inflateTransitionAsync(final int resource,
+            final OnTransitionInflatedListener listener) {
+        sInflateExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Transition transition;
+                try {
+                    transition = inflateTransition(resource);
+                } catch (final RuntimeException e) {
+                    sMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onInflateFailed(e);
+                        }
+                    });
+                    return;
+                }
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onTransitionInflated(transition);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Loads a {@link android.support.transition.TransitionManager} object from a resource
+     * on a background thread. The listener is called on the main thread once the
+     * transition manager has been inflated. Only the resources are parsed on the
+     * background thread; the scenes referenced by the resource are looked up on
+     * the scene root from the main thread, right before the listener is called.
+     *
+     * <p>If the transition manager cannot be loaded, the exception that
+     * {@link #inflateTransitionManager(int, android.view.ViewGroup)} would have thrown is
+     * passed to {@link OnTransitionManagerInflatedListener#onInflateFailed(Exception)}
+     * on the main thread.</p>
+     *
+     * @param resource The resource id of the transition manager to load
+     * @param sceneRoot The root of the scenes referenced by the resource
+     * @param listener The listener notified on the main thread with the loaded
+     * TransitionManager object
+     */
+    public void inflateTransitionManagerAsync(final int resource, final ViewGroup sceneRoot,
+            final OnTransitionManagerInflatedListener listener) {
+        sInflateExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final ArrayList<SceneTransition> sceneTransitions =
+                        new ArrayList<SceneTransition>();
+                final TransitionManager transitionManager;
+                try {
+                    transitionManager = parseTransitionManager(resource, sceneTransitions);
+                } catch (final RuntimeException e) {
+                    sMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onInflateFailed(e);
+                        }
+                    });
+                    return;
+                }
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            applySceneTransitions(transitionManager, sceneRoot, sceneTransitions);
+                        } catch (RuntimeException e) {
+                            listener.onInflateFailed(e);
+                            return;
+                        }
+                        listener.onTransitionManagerInflated(transitionManager);
+                    }
+                });
+            }
+        });
     }
 
     /**
@@ -108,9 +199,18 @@ public class TransitionInflater {
      * transition manager cannot be loaded
      */
     public TransitionManager inflateTransitionManager(int resource, ViewGroup sceneRoot) {
+        ArrayList<SceneTransition> sceneTransitions = new ArrayList<SceneTransition>();
+        TransitionManager transitionManager = parseTransitionManager(resource, sceneTransitions);
+        applySceneTransitions(transitionManager, sceneRoot, sceneTransitions);
+        return transitionManager;
+    }
+
+    private TransitionManager parseTransitionManager(int resource,
+            ArrayList<SceneTransition> sceneTransitions) {
         XmlResourceParser parser =  mContext.getResources().getXml(resource);
         try {
-            return createTransitionManagerFromXml(parser, Xml.asAttributeSet(parser), sceneRoot);
+            return createTransitionManagerFromXml(parser, Xml.asAttributeSet(parser),
+                    sceneTransitions);
         } catch (XmlPullParserException e) {
             InflateException ex = new InflateException(e.getMessage());
             ex.initCause(e);
@@ -267,7 +367,8 @@ public class TransitionInflater {
     //
 
     private TransitionManager createTransitionManagerFromXml(XmlPullParser parser,
-            AttributeSet attrs, ViewGroup sceneRoot) throws XmlPullParserException, IOException {
+            AttributeSet attrs, ArrayList<SceneTransition> sceneTransitions)
+            throws XmlPullParserException, IOException {
 
         // Make sure we are on a start tag.
         int type;
@@ -285,7 +386,7 @@ public class TransitionInflater {
             if (name.equals("transitionManager")) {
                 transitionManager = new TransitionManager();
             } else if (name.equals("transition") && (transitionManager != null)) {
-                loadTransition(attrs, sceneRoot, transitionManager);
+                loadTransition(attrs, sceneTransitions);
             } else {
                 throw new RuntimeException("Unknown scene name: " + parser.getName());
             }
@@ -293,35 +394,116 @@ public class TransitionInflater {
         return transitionManager;
     }
 
-    private void loadTransition(AttributeSet attrs, ViewGroup sceneRoot,
-            TransitionManager transitionManager) throws Resources.NotFoundException {
+    private void loadTransition(AttributeSet attrs,
+            ArrayList<SceneTransition> sceneTransitions) throws Resources.NotFoundException {
 
         TypedArray a = mContext.obtainStyledAttributes(attrs,
                 com.guerwan.transitionsbackport.R.styleable.TransitionManager);
         int transitionId = a.getResourceId(
                 com.guerwan.transitionsbackport.R.styleable.TransitionManager_transition, -1);
-        android.support.transition.Scene fromScene = null, toScene = null;
         int fromId = a.getResourceId(
                 com.guerwan.transitionsbackport.R.styleable.TransitionManager_fromScene, -1);
-        if (fromId >= 0) fromScene = android.support.transition.Scene.getSceneForLayout(sceneRoot, fromId, mContext);
         int toId = a.getResourceId(
                 com.guerwan.transitionsbackport.R.styleable.TransitionManager_toScene, -1);
-        if (toId >= 0) toScene = Scene.getSceneForLayout(sceneRoot, toId, mContext);
         if (transitionId >= 0) {
             Transition transition = inflateTransition(transitionId);
             if (transition != null) {
-                if (fromScene != null) {
-                    if (toScene == null){
-                        throw new RuntimeException("No matching toScene for given fromScene " +
-                                "for transition ID " + transitionId);
-                    } else {
-                        transitionManager.setTransition(fromScene, toScene, transition);
-                    }
-                } else if (toId >= 0) {
-                    transitionManager.setTransition(toScene, transition);
+                if (fromId >= 0 && toId < 0) {
+                    throw new RuntimeException("No matching toScene for given fromScene " +
+                            "for transition ID " + transitionId);
                 }
+                sceneTransitions.add(new SceneTransition(fromId, toId, transition));
             }
         }
         a.recycle();
     }
+
+    /**
+     * Resolves the scenes of the parsed scene transitions on the given scene root
+     * and registers them with the transition manager. Scenes are cached on the
+     * scene root, so this must run on the main thread.
+     */
+    private void applySceneTransitions(TransitionManager transitionManager, ViewGroup sceneRoot,
+            ArrayList<SceneTransition> sceneTransitions) {
+        if (transitionManager == null) {
+            return;
+        }
+        int numTransitions = sceneTransitions.size();
+        for (int i = 0; i < numTransitions; ++i) {
+            SceneTransition sceneTransition = sceneTransitions.get(i);
+            if (sceneTransition.toId < 0) {
+                continue;
+            }
+            Scene toScene = Scene.getSceneForLayout(sceneRoot, sceneTransition.toId, mContext);
+            if (sceneTransition.fromId >= 0) {
+                Scene fromScene = Scene.getSceneForLayout(sceneRoot, sceneTransition.fromId,
+                        mContext);
+                transitionManager.setTransition(fromScene, toScene, sceneTransition.transition);
+            } else {
+                transitionManager.setTransition(toScene, sceneTransition.transition);
+            }
+        }
+    }
+
+    /**
+     * A parsed <code>transition</code> tag of a transitionManager resource, kept
+     * by layout id until its scenes can be resolved on the scene root.
+     */
+    private static class SceneTransition {
+        final int fromId;
+        final int toId;
+        final Transition transition;
+
+        SceneTransition(int fromId, int toId, Transition transition) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.transition = transition;
+        }
+    }
+
+    /**
+     * Listener notified on the main thread when a transition requested through
+     * {@link #inflateTransitionAsync(int, OnTransitionInflatedListener)} has been loaded.
+     */
+    public static interface OnTransitionInflatedListener {
+        /**
+         * Called on the main thread with the inflated transition.
+         *
+         * @param transition The loaded Transition object.
+         */
+        void onTransitionInflated(Transition transition);
+
+        /**
+         * Called on the main thread when the transition cannot be loaded.
+         *
+         * @param e The exception that {@link #inflateTransition(int)} would
+         * have thrown, typically an {@link android.view.InflateException} or a
+         * {@link android.content.res.Resources.NotFoundException}.
+         */
+        void onInflateFailed(Exception e);
+    }
+
+    /**
+     * Listener notified on the main thread when a transition manager requested through
+     * {@link #inflateTransitionManagerAsync(int, android.view.ViewGroup, OnTransitionManagerInflatedListener)}
+     * has been loaded.
+     */
+    public static interface OnTransitionManagerInflatedListener {
+        /**
+         * Called on the main thread with the inflated transition manager.
+         *
+         * @param transitionManager The loaded TransitionManager object.
+         */
+        void onTransitionManagerInflated(TransitionManager transitionManager);
+
+        /**
+         * Called on the main thread when the transition manager cannot be loaded.
+         *
+         * @param e The exception that
+         * {@link #inflateTransitionManager(int, android.view.ViewGroup)} would have
+         * thrown, typically an {@link android.view.InflateException} or a
+         * {@link android.content.res.Resources.NotFoundException}.
+         */
+        void onInflateFailed(Exception e);
+    }
 }
@@ -19,10 +19,11 @@ package android.support.transition;
 import android.support.transition.utils.ArrayMap;
 import android.support.transition.utils.OverlayCompatibilityHelper;
 import android.util.Log;
+import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
+import android.view.animation.AnimationUtils;
 
-import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 
 /**
@@ -64,16 +65,65 @@ public class TransitionManager {
 
     private static String LOG_TAG = "TransitionManager";
 
+    /**
+     * Interruption policy in which a new transition on a scene root pauses the
+     * transitions already running there, and then runs in parallel with them once
+     * they are resumed. This is the default.
+     *
+     * @see #setInterruptionPolicy(android.view.ViewGroup, int)
+     */
+    public static final int INTERRUPTION_PARALLEL = 0;
+    /**
+     * Interruption policy in which a new transition on a scene root cancels the
+     * transitions already running there. The new transition starts from wherever
+     * the canceled animations left their targets.
+     *
+     * @see #setInterruptionPolicy(android.view.ViewGroup, int)
+     */
+    public static final int INTERRUPTION_CANCEL_PREVIOUS = 1;
+    /**
+     * Interruption policy in which the transitions already running on a scene root
+     * are left to finish, and a new change is applied without a transition.
+     *
+     * @see #setInterruptionPolicy(android.view.ViewGroup, int)
+     */
+    public static final int INTERRUPTION_SKIP_NEW = 2;
+    /**
+     * Interruption policy in which scene changes requested while transitions are
+     * running on a scene root are queued, and performed with their transition
+     * once the running transitions have ended. Changes made through
+     * {@link #beginDelayedTransition(android.view.ViewGroup, android.support.transition.Transition)}
+     * have already been applied by the caller and cannot wait, so they are handled
+     * as with {@link #INTERRUPTION_SKIP_NEW}. Scene changes without a transition
+     * are queued as well while other changes are waiting, so that the scenes are
+     * always entered in the order they were requested.
+     *
+     * @see #setInterruptionPolicy(android.view.ViewGroup, int)
+     */
+    public static final int INTERRUPTION_QUEUE = 3;
+    /**
+     * Interruption policy in which a new transition runs in parallel with the
+     * transitions already running on a scene root, but cancels their animations on
+     * every view that it animates itself, so that each view is only animated
+     * toward its latest end state.
+     *
+     * @see #setInterruptionPolicy(android.view.ViewGroup, int)
+     */
+    public static final int INTERRUPTION_RETARGET = 4;
+
     private static android.support.transition.Transition sDefaultTransition = new android.support.transition.AutoTransition();
 
     ArrayMap<Scene, Transition> mSceneTransitions = new ArrayMap<android.support.transition.Scene, android.support.transition.Transition>();
     ArrayMap<android.support.transition.Scene, ArrayMap<android.support.transition.Scene, android.support.transition.Transition>> mScenePairTransitions =
             new ArrayMap<android.support.transition.Scene, ArrayMap<android.support.transition.Scene, android.support.transition.Transition>>();
-    private static ThreadLocal<WeakReference<ArrayMap<ViewGroup, ArrayList<android.support.transition.Transition>>>>
-            sRunningTransitions =
-            new ThreadLocal<WeakReference<ArrayMap<ViewGroup, ArrayList<android.support.transition.Transition>>>>();
-    private static ArrayList<ViewGroup> sPendingTransitions = new ArrayList<ViewGroup>();
+    // Running and pending transitions are stored on the scene root itself (see
+    // getRunningTransitions() and getPendingTransition()), so that a root that goes
+    // away never stays reachable from here and lookups don't scan every root.
+
+    // Interruption policies are stored on the scene root as well, see getRootPolicy()
 
+    private static boolean sCoalesceDelayedTransitions = false;
+    private static boolean sBatchTransitions = false;
 
     /**
      * Sets the transition to be used for any scene change for which no
@@ -97,6 +147,181 @@ public class TransitionManager {
         return sDefaultTransition;
     }
 
+    /**
+     * Sets whether calls to {@link #beginDelayedTransition(android.view.ViewGroup, android.support.transition.Transition)}
+     * for a scene root that already has a transition pending for the next frame
+     * are merged into that pending transition. By default they are ignored.
+     *
+     * <p>When coalescing, the transitions of all calls made during the same frame
+     * play together as one set. Later transitions capture their start values into
+     * the values already captured by the first call, so the hierarchy is only
+     * walked once per frame and per scene root. Passing the same transition
+     * several times only adds it once.</p>
+     *
+     * @param coalesce true to merge later transitions into the pending one,
+     * false to ignore them.
+     */
+    public static void setCoalesceDelayedTransitions(boolean coalesce) {
+        sCoalesceDelayedTransitions = coalesce;
+    }
+
+    /**
+     * Returns whether delayed transitions requested during the same frame are
+     * merged together.
+     *
+     * @return true if later transitions are merged into the pending one.
+     * @see #setCoalesceDelayedTransitions(boolean)
+     */
+    public static boolean getCoalesceDelayedTransitions() {
+        return sCoalesceDelayedTransitions;
+    }
+
+    /**
+     * Sets whether the transitions of all scene roots in a window that are
+     * started for the same frame run from a single pre-draw callback. By default
+     * each scene root registers its own callback.
+     *
+     * <p>When batching, the end values of every pending scene root are captured
+     * before any transition sets up its animations (which moves views back to
+     * their start state), and the animators of all roots are started together
+     * in the same frame.</p>
+     *
+     * @param batch true to run all pending transitions of a window together.
+     */
+    public static void setBatchTransitions(boolean batch) {
+        sBatchTransitions = batch;
+    }
+
+    /**
+     * Returns whether the pending transitions of a window run together.
+     *
+     * @return true if transitions are batched per window.
+     * @see #setBatchTransitions(boolean)
+     */
+    public static boolean getBatchTransitions() {
+        return sBatchTransitions;
+    }
+
+    /**
+     * Sets how a new transition on the given scene root interacts with the
+     * transitions already running on it. The default is {@link #INTERRUPTION_PARALLEL}.
+     *
+     * @param sceneRoot The scene root the policy applies to.
+     * @param policy One of {@link #INTERRUPTION_PARALLEL}, {@link #INTERRUPTION_CANCEL_PREVIOUS},
+     * {@link #INTERRUPTION_SKIP_NEW}, {@link #INTERRUPTION_QUEUE} and
+     * {@link #INTERRUPTION_RETARGET}.
+     */
+    public static void setInterruptionPolicy(ViewGroup sceneRoot, int policy) {
+        if (policy < INTERRUPTION_PARALLEL || policy > INTERRUPTION_RETARGET) {
+            throw new IllegalArgumentException("Invalid interruption policy: " + policy);
+        }
+        getRootPolicy(sceneRoot, true).interruptionPolicy = policy;
+    }
+
+    /**
+     * Returns the interruption policy of the given scene root.
+     *
+     * @param sceneRoot The scene root to query.
+     * @return The interruption policy of the scene root.
+     * @see #setInterruptionPolicy(android.view.ViewGroup, int)
+     */
+    public static int getInterruptionPolicy(ViewGroup sceneRoot) {
+        RootPolicy rootPolicy = getRootPolicy(sceneRoot, false);
+        return rootPolicy != null ? rootPolicy.interruptionPolicy : INTERRUPTION_PARALLEL;
+    }
+
+    /**
+     * Limits the number of transitions running at the same time on the given
+     * scene root. When a new transition would exceed the limit, the oldest
+     * running transitions are canceled. This bounds the animation work per frame
+     * under the {@link #INTERRUPTION_PARALLEL} and {@link #INTERRUPTION_RETARGET}
+     * policies. By default there is no limit.
+     *
+     * @param sceneRoot The scene root the limit applies to.
+     * @param maxRunningTransitions The maximum number of running transitions,
+     * at least 1, or 0 for no limit.
+     */
+    public static void setMaxRunningTransitions(ViewGroup sceneRoot, int maxRunningTransitions) {
+        if (maxRunningTransitions < 0) {
+            throw new IllegalArgumentException("Invalid maximum number of running " +
+                    "transitions: " + maxRunningTransitions);
+        }
+        getRootPolicy(sceneRoot, true).maxRunningTransitions = maxRunningTransitions;
+    }
+
+    /**
+     * Returns the maximum number of transitions running at the same time on the
+     * given scene root.
+     *
+     * @param sceneRoot The scene root to query.
+     * @return The maximum number of running transitions, or 0 if there is no limit.
+     * @see #setMaxRunningTransitions(android.view.ViewGroup, int)
+     */
+    public static int getMaxRunningTransitions(ViewGroup sceneRoot) {
+        RootPolicy rootPolicy = getRootPolicy(sceneRoot, false);
+        return rootPolicy != null ? rootPolicy.maxRunningTransitions : 0;
+    }
+
+    /**
+     * Sets the minimum time between two transitions started on the given scene
+     * root by {@link #beginThrottledTransition(android.view.ViewGroup,
+     * android.support.transition.Transition, Runnable)}. This is meant for changes
+     * that happen at a high rate, such as filtering a list as the user types: the
+     * first change of a burst is animated right away, and the changes made during
+     * the following interval are held back and applied together once it has
+     * elapsed, animated by a single transition.
+     *
+     * @param sceneRoot The scene root the interval applies to.
+     * @param intervalMillis The minimum time between two throttled transitions, in
+     * milliseconds, or 0 to apply and animate every change right away.
+     */
+    public static void setMinTransitionInterval(ViewGroup sceneRoot, long intervalMillis) {
+        if (intervalMillis < 0) {
+            throw new IllegalArgumentException("Invalid transition interval: " + intervalMillis);
+        }
+        getRootPolicy(sceneRoot, true).minTransitionInterval = intervalMillis;
+    }
+
+    /**
+     * Returns the minimum time between two throttled transitions on the given
+     * scene root.
+     *
+     * @param sceneRoot The scene root to query.
+     * @return The minimum time between two throttled transitions, in milliseconds.
+     * @see #setMinTransitionInterval(android.view.ViewGroup, long)
+     */
+    public static long getMinTransitionInterval(ViewGroup sceneRoot) {
+        RootPolicy rootPolicy = getRootPolicy(sceneRoot, false);
+        return rootPolicy != null ? rootPolicy.minTransitionInterval : 0;
+    }
+
+    /**
+     * Applies the changes held back on the given scene root, animated by one
+     * delayed transition that captures the start values once for all of them.
+     */
+    private static void runThrottledChanges(ViewGroup sceneRoot, RootPolicy rootPolicy) {
+        rootPolicy.lastTransitionTime = AnimationUtils.currentAnimationTimeMillis();
+        android.support.transition.Transition transition = rootPolicy.throttledTransition;
+        ArrayList<Runnable> changes = new ArrayList<Runnable>(rootPolicy.throttledChanges);
+        rootPolicy.throttledTransition = null;
+        rootPolicy.throttledChanges.clear();
+        beginDelayedTransition(sceneRoot, transition);
+        int numChanges = changes.size();
+        for (int i = 0; i < numChanges; ++i) {
+            changes.get(i).run();
+        }
+    }
+
+    private static RootPolicy getRootPolicy(ViewGroup sceneRoot, boolean create) {
+        RootPolicy rootPolicy = (RootPolicy) sceneRoot.getTag(
+                com.guerwan.transitionsbackport.R.id.transition_policy);
+        if (rootPolicy == null && create) {
+            rootPolicy = new RootPolicy();
+            sceneRoot.setTag(com.guerwan.transitionsbackport.R.id.transition_policy, rootPolicy);
+        }
+        return rootPolicy;
+    }
+
     /**
      * Sets a specific transition to occur when the given scene is entered.
      *
@@ -175,12 +400,31 @@ public class TransitionManager {
 
         final ViewGroup sceneRoot = scene.getSceneRoot();
 
-        android.support.transition.Transition transitionClone = transition.clone();
-        transitionClone.setSceneRoot(sceneRoot);
+        if (hasActiveTransitions(sceneRoot)) {
+            int policy = getInterruptionPolicy(sceneRoot);
+            RootPolicy rootPolicy = getRootPolicy(sceneRoot, false);
+            if (policy == INTERRUPTION_QUEUE && (transition != null ||
+                    (rootPolicy != null && rootPolicy.queuedScenes.size() > 0))) {
+                // A change without a transition also waits for the queued ones, which
+                // would otherwise run over its scene once the running transitions end
+                rootPolicy = getRootPolicy(sceneRoot, true);
+                rootPolicy.queuedScenes.add(scene);
+                rootPolicy.queuedTransitions.add(transition);
+                return;
+            } else if (policy == INTERRUPTION_SKIP_NEW) {
+                transition = null;
+            }
+        }
 
-        android.support.transition.Scene oldScene = android.support.transition.Scene.getCurrentScene(sceneRoot);
-        if (oldScene != null && oldScene.isCreatedFromLayoutResource()) {
-            transitionClone.setCanRemoveViews(true);
+        android.support.transition.Transition transitionClone = null;
+        if (transition != null) {
+            transitionClone = transition.clone();
+            transitionClone.setSceneRoot(sceneRoot);
+
+            android.support.transition.Scene oldScene = android.support.transition.Scene.getCurrentScene(sceneRoot);
+            if (oldScene != null && oldScene.isCreatedFromLayoutResource()) {
+                transitionClone.setCanRemoveViews(true);
+            }
         }
 
         sceneChangeSetup(sceneRoot, transitionClone);
@@ -190,55 +434,78 @@ public class TransitionManager {
         sceneChangeRunTransition(sceneRoot, transitionClone);
     }
 
-    private static ArrayMap<ViewGroup, ArrayList<android.support.transition.Transition>> getRunningTransitions() {
-        WeakReference<ArrayMap<ViewGroup, ArrayList<android.support.transition.Transition>>> runningTransitions =
-                sRunningTransitions.get();
-        if (runningTransitions == null || runningTransitions.get() == null) {
-            ArrayMap<ViewGroup, ArrayList<android.support.transition.Transition>> transitions =
-                    new ArrayMap<ViewGroup, ArrayList<android.support.transition.Transition>>();
-            runningTransitions = new WeakReference<ArrayMap<ViewGroup, ArrayList<android.support.transition.Transition>>>(
-                    transitions);
-            sRunningTransitions.set(runningTransitions);
+    /**
+     * Returns whether a transition is running on the given scene root, or
+     * waiting for the next frame to start.
+     */
+    private static boolean hasActiveTransitions(ViewGroup sceneRoot) {
+        if (getPendingTransition(sceneRoot) != null) {
+            return true;
         }
-        return runningTransitions.get();
+        ArrayList<android.support.transition.Transition> runningTransitions =
+                getRunningTransitions(sceneRoot, false);
+        return runningTransitions != null && runningTransitions.size() > 0;
+    }
+
+    /**
+     * Performs the scene changes queued on the given scene root, up to the first
+     * one that starts a transition, if any.
+     */
+    private static void runQueuedSceneChange(ViewGroup sceneRoot) {
+        RootPolicy rootPolicy = getRootPolicy(sceneRoot, false);
+        while (rootPolicy != null && rootPolicy.queuedScenes.size() > 0 &&
+                !hasActiveTransitions(sceneRoot)) {
+            android.support.transition.Scene scene = rootPolicy.queuedScenes.remove(0);
+            android.support.transition.Transition transition = rootPolicy.queuedTransitions.remove(0);
+            changeScene(scene, transition);
+        }
+    }
+
+    /**
+     * Returns the list of transitions currently running on the given scene root,
+     * creating it if requested. The list is stored as a tag on the root.
+     */
+    @SuppressWarnings("unchecked")
+    private static ArrayList<android.support.transition.Transition> getRunningTransitions(
+            ViewGroup sceneRoot, boolean create) {
+        ArrayList<android.support.transition.Transition> runningTransitions =
+                (ArrayList<android.support.transition.Transition>) sceneRoot.getTag(
+                        com.guerwan.transitionsbackport.R.id.running_transitions);
+        if (runningTransitions == null && create) {
+            runningTransitions = new ArrayList<android.support.transition.Transition>();
+            sceneRoot.setTag(com.guerwan.transitionsbackport.R.id.running_transitions,
+                    runningTransitions);
+        }
+        return runningTransitions;
+    }
+
+    private static android.support.transition.Transition getPendingTransition(ViewGroup sceneRoot) {
+        return (android.support.transition.Transition) sceneRoot.getTag(
+                com.guerwan.transitionsbackport.R.id.pending_transition);
+    }
+
+    private static void setPendingTransition(ViewGroup sceneRoot,
+            android.support.transition.Transition transition) {
+        sceneRoot.setTag(com.guerwan.transitionsbackport.R.id.pending_transition, transition);
     }
 
     private static void sceneChangeRunTransition(final ViewGroup sceneRoot,
             final android.support.transition.Transition transition) {
         if (transition != null) {
             OverlayCompatibilityHelper.addViewOverlayCompat(sceneRoot);
+            if (sBatchTransitions) {
+                TransitionBatch.add(sceneRoot, transition);
+                return;
+            }
             final ViewTreeObserver observer = sceneRoot.getViewTreeObserver();
             final ViewTreeObserver.OnPreDrawListener listener =
                     new ViewTreeObserver.OnPreDrawListener() {
                 public boolean onPreDraw() {
                     sceneRoot.getViewTreeObserver().removeOnPreDrawListener(this);
-                    sPendingTransitions.remove(sceneRoot);
-                    // Add to running list, handle end to remove it
-                    final ArrayMap<ViewGroup, ArrayList<android.support.transition.Transition>> runningTransitions =
-                            getRunningTransitions();
-                    ArrayList<android.support.transition.Transition> currentTransitions = runningTransitions.get(sceneRoot);
-                    ArrayList<android.support.transition.Transition> previousRunningTransitions = null;
-                    if (currentTransitions == null) {
-                        currentTransitions = new ArrayList<android.support.transition.Transition>();
-                        runningTransitions.put(sceneRoot, currentTransitions);
-                    } else if (currentTransitions.size() > 0) {
-                        previousRunningTransitions = new ArrayList<android.support.transition.Transition>(currentTransitions);
-                    }
-                    currentTransitions.add(transition);
-                    transition.addListener(new android.support.transition.Transition.TransitionListenerAdapter() {
-                        @Override
-                        public void onTransitionEnd(android.support.transition.Transition transition) {
-                            ArrayList<android.support.transition.Transition> currentTransitions =
-                                    runningTransitions.get(sceneRoot);
-                            currentTransitions.remove(transition);
-                        }
-                    });
+                    ArrayList<android.support.transition.Transition> previousRunningTransitions =
+                            addRunningTransition(sceneRoot, transition);
                     transition.captureValues(sceneRoot, false);
-                    if (previousRunningTransitions != null) {
-                        for (android.support.transition.Transition runningTransition : previousRunningTransitions) {
-                            runningTransition.resume();
-                        }
-                    }
+                    resumeTransitions(previousRunningTransitions);
                     transition.playTransition(sceneRoot);
 
                     return true;
@@ -248,14 +515,80 @@ public class TransitionManager {
         }
     }
 
+    /**
+     * Moves the pending transition of the scene root to its running list.
+     *
+     * @return The transitions that were already running on the scene root, or
+     * null if there were none.
+     */
+    private static ArrayList<android.support.transition.Transition> addRunningTransition(
+            final ViewGroup sceneRoot, android.support.transition.Transition transition) {
+        setPendingTransition(sceneRoot, null);
+        // Add to running list, handle end to remove it
+        final ArrayList<android.support.transition.Transition> currentTransitions =
+                getRunningTransitions(sceneRoot, true);
+        ArrayList<android.support.transition.Transition> previousRunningTransitions = null;
+        if (currentTransitions.size() > 0) {
+            previousRunningTransitions = new ArrayList<android.support.transition.Transition>(currentTransitions);
+        }
+        currentTransitions.add(transition);
+        transition.addListener(new android.support.transition.Transition.TransitionListenerAdapter() {
+            @Override
+            public void onTransitionEnd(android.support.transition.Transition transition) {
+                currentTransitions.remove(transition);
+                if (currentTransitions.isEmpty() && getPendingTransition(sceneRoot) == null) {
+                    runQueuedSceneChange(sceneRoot);
+                }
+            }
+        });
+        return previousRunningTransitions;
+    }
+
+    private static void resumeTransitions(
+            ArrayList<android.support.transition.Transition> transitions) {
+        if (transitions != null) {
+            int numTransitions = transitions.size();
+            for (int i = 0; i < numTransitions; ++i) {
+                transitions.get(i).resume();
+            }
+        }
+    }
+
     private static void sceneChangeSetup(ViewGroup sceneRoot, android.support.transition.Transition transition) {
 
         // Capture current values
-        ArrayList<android.support.transition.Transition> runningTransitions = getRunningTransitions().get(sceneRoot);
+        ArrayList<android.support.transition.Transition> runningTransitions =
+                getRunningTransitions(sceneRoot, false);
+
+        if (runningTransitions != null && runningTransitions.size() > 0 && transition != null) {
+            int policy = getInterruptionPolicy(sceneRoot);
+            int numToCancel;
+            if (policy == INTERRUPTION_CANCEL_PREVIOUS) {
+                numToCancel = runningTransitions.size();
+            } else {
+                int maxRunningTransitions = getMaxRunningTransitions(sceneRoot);
+                numToCancel = maxRunningTransitions > 0 ?
+                        runningTransitions.size() - maxRunningTransitions + 1 : 0;
+            }
+            if (numToCancel > 0) {
+                // The oldest transitions come first. Take them off the running list before
+                // canceling them: cancel() stops all their animators, delayed ones included,
+                // but a transition whose animators never ran does not report its end.
+                ArrayList<android.support.transition.Transition> canceledTransitions =
+                        new ArrayList<android.support.transition.Transition>(
+                                runningTransitions.subList(0, numToCancel));
+                runningTransitions.subList(0, numToCancel).clear();
+                for (int i = 0; i < numToCancel; ++i) {
+                    canceledTransitions.get(i).cancel();
+                }
+            }
+            transition.setRetargetRunningAnimators(policy == INTERRUPTION_RETARGET);
+        }
 
         if (runningTransitions != null && runningTransitions.size() > 0) {
-            for (android.support.transition.Transition runningTransition : runningTransitions) {
-                runningTransition.pause();
+            int numRunningTransitions = runningTransitions.size();
+            for (int i = 0; i < numRunningTransitions; ++i) {
+                runningTransitions.get(i).pause();
             }
         }
 
@@ -340,8 +673,10 @@ public class TransitionManager {
      * unrelated code also wants to make dynamic changes and run a transition on
      * the same scene root), only the first call will trigger capturing values
      * and exiting the current scene. Subsequent calls to the method with the
-     * same scene root during the same frame will be ignored.</p>
-     *
+     * same scene root during the same frame will be ignored, unless
+     * {@link #setCoalesceDelayedTransitions(boolean) coalescing} is enabled, in which
+     * case their transitions are merged into the pending one.</p>
+
      * <p>Passing in <code>null</code> for the transition parameter will
      * cause the TransitionManager to use its default transition.</p>
      *
@@ -350,7 +685,16 @@ public class TransitionManager {
      * value of null causes the TransitionManager to use the default transition.
      */
     public static void beginDelayedTransition(final ViewGroup sceneRoot, android.support.transition.Transition transition) {
-        if (!sPendingTransitions.contains(sceneRoot)
+        android.support.transition.Transition pendingTransition = getPendingTransition(sceneRoot);
+        if (pendingTransition == null && hasActiveTransitions(sceneRoot)) {
+            int policy = getInterruptionPolicy(sceneRoot);
+            if (policy == INTERRUPTION_SKIP_NEW || policy == INTERRUPTION_QUEUE) {
+                // Let the running transitions finish, the upcoming changes are not animated
+                Scene.setCurrentScene(sceneRoot, null);
+                return;
+            }
+        }
+        if (pendingTransition == null
                 //TODO
                 //& sceneRoot.isLaidOut()
                 ) {
@@ -358,14 +702,185 @@ public class TransitionManager {
                 Log.d(LOG_TAG, "beginDelayedTransition: root, transition = " +
                         sceneRoot + ", " + transition);
             }
-            sPendingTransitions.add(sceneRoot);
             if (transition == null) {
                 transition = sDefaultTransition;
             }
-            final android.support.transition.Transition transitionClone = transition.clone();
+            final android.support.transition.Transition transitionClone;
+            if (sCoalesceDelayedTransitions) {
+                CoalescedTransitionSet coalescedSet = new CoalescedTransitionSet();
+                coalescedSet.addSource(transition);
+                transitionClone = coalescedSet;
+            } else {
+                transitionClone = transition.clone();
+            }
+            setPendingTransition(sceneRoot, transitionClone);
             sceneChangeSetup(sceneRoot, transitionClone);
             Scene.setCurrentScene(sceneRoot, null);
             sceneChangeRunTransition(sceneRoot, transitionClone);
+        } else if (pendingTransition instanceof CoalescedTransitionSet) {
+            if (transition == null) {
+                transition = sDefaultTransition;
+            }
+            if (android.support.transition.Transition.DBG) {
+                Log.d(LOG_TAG, "beginDelayedTransition: coalescing root, transition = " +
+                        sceneRoot + ", " + transition);
+            }
+            ((CoalescedTransitionSet) pendingTransition).addSource(transition);
+        }
+    }
+
+    /**
+     * Applies a change to the given scene root and animates it with a delayed
+     * transition, at most once per {@link #setMinTransitionInterval(android.view.ViewGroup,
+     * long) minimum transition interval} of the root. When the interval has
+     * elapsed since the last throttled transition, the change is applied right
+     * away, as if {@link #beginDelayedTransition(android.view.ViewGroup,
+     * android.support.transition.Transition)} had been called just before.
+     * Otherwise it is held back until the interval elapses. All the changes held
+     * back by then are applied in the order they were made, animated by a single
+     * transition, so the changes made inside the interval are part of its end
+     * state instead of jumping.
+     *
+     * <p>Since a change may run later, it should read the state it applies when it
+     * runs rather than when it is passed in. Without an interval on the root, the
+     * change is always applied right away.</p>
+     *
+     * @param sceneRoot The root of the View hierarchy to run the transition on.
+     * @param transition The transition to use for this change. A value of null
+     * causes the TransitionManager to use the default transition. When changes are
+     * held back, the transition of the last one animates all of them.
+     * @param change The change to apply to the views of the scene root.
+     */
+    public static void beginThrottledTransition(final ViewGroup sceneRoot,
+            android.support.transition.Transition transition, Runnable change) {
+        final RootPolicy rootPolicy = getRootPolicy(sceneRoot, false);
+        if (rootPolicy == null || (rootPolicy.minTransitionInterval <= 0 &&
+                !rootPolicy.throttledChangesPosted)) {
+            beginDelayedTransition(sceneRoot, transition);
+            change.run();
+            return;
+        }
+        rootPolicy.throttledChanges.add(change);
+        rootPolicy.throttledTransition = transition;
+        if (rootPolicy.throttledChangesPosted) {
+            if (android.support.transition.Transition.DBG) {
+                Log.d(LOG_TAG, "beginThrottledTransition: holding back change on root " +
+                        sceneRoot);
+            }
+            return;
+        }
+        long delay = rootPolicy.lastTransitionTime < 0 ? 0 : rootPolicy.lastTransitionTime +
+                rootPolicy.minTransitionInterval - AnimationUtils.currentAnimationTimeMillis();
+        if (delay <= 0) {
+            runThrottledChanges(sceneRoot, rootPolicy);
+        } else {
+            rootPolicy.throttledChangesPosted = true;
+            sceneRoot.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    rootPolicy.throttledChangesPosted = false;
+                    runThrottledChanges(sceneRoot, rootPolicy);
+                }
+            }, delay);
+        }
+    }
+
+    /**
+     * The pending transition of a scene root when delayed transitions are
+     * coalesced. It holds a clone of every distinct transition requested during
+     * the frame, all sharing the start values captured by the first request.
+     */
+    private static class CoalescedTransitionSet extends TransitionSet {
+        private ArrayList<android.support.transition.Transition> mSources =
+                new ArrayList<android.support.transition.Transition>();
+
+        void addSource(android.support.transition.Transition transition) {
+            if (mSources.contains(transition)) {
+                return;
+            }
+            mSources.add(transition);
+            if (mSources.size() == 1) {
+                // Nothing has been captured yet
+                addTransition(transition.clone());
+            } else {
+                addTransitionAfterCapture(transition.clone());
+            }
         }
     }
+
+    /**
+     * The transitions of one window waiting for the next frame when transitions
+     * are {@link #setBatchTransitions(boolean) batched}. A single instance is stored
+     * on the root view of the window and is the only pre-draw listener registered
+     * for all of them.
+     */
+    private static class TransitionBatch implements ViewTreeObserver.OnPreDrawListener {
+        private final View mWindowRoot;
+        private final ArrayList<ViewGroup> mSceneRoots = new ArrayList<ViewGroup>();
+        private final ArrayList<android.support.transition.Transition> mTransitions =
+                new ArrayList<android.support.transition.Transition>();
+
+        private TransitionBatch(View windowRoot) {
+            mWindowRoot = windowRoot;
+        }
+
+        static void add(ViewGroup sceneRoot, android.support.transition.Transition transition) {
+            View windowRoot = sceneRoot.getRootView();
+            TransitionBatch batch = (TransitionBatch) windowRoot.getTag(
+                    com.guerwan.transitionsbackport.R.id.transition_batch);
+            if (batch == null) {
+                batch = new TransitionBatch(windowRoot);
+                windowRoot.setTag(com.guerwan.transitionsbackport.R.id.transition_batch, batch);
+                windowRoot.getViewTreeObserver().addOnPreDrawListener(batch);
+            }
+            batch.mSceneRoots.add(sceneRoot);
+            batch.mTransitions.add(transition);
+        }
+
+        @Override
+        public boolean onPreDraw() {
+            mWindowRoot.getViewTreeObserver().removeOnPreDrawListener(this);
+            mWindowRoot.setTag(com.guerwan.transitionsbackport.R.id.transition_batch, null);
+            int numRoots = mSceneRoots.size();
+            ArrayList<ArrayList<android.support.transition.Transition>> previousRunningTransitions =
+                    new ArrayList<ArrayList<android.support.transition.Transition>>(numRoots);
+            // Capture the end state of every root before any of the transitions
+            // puts its targets back to their start values
+            for (int i = 0; i < numRoots; ++i) {
+                ViewGroup sceneRoot = mSceneRoots.get(i);
+                android.support.transition.Transition transition = mTransitions.get(i);
+                previousRunningTransitions.add(addRunningTransition(sceneRoot, transition));
+                transition.captureValues(sceneRoot, false);
+            }
+            for (int i = 0; i < numRoots; ++i) {
+                resumeTransitions(previousRunningTransitions.get(i));
+                mTransitions.get(i).prepareTransition(mSceneRoots.get(i));
+            }
+            for (int i = 0; i < numRoots; ++i) {
+                mTransitions.get(i).runAnimators();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Interruption and throttling settings of a scene root, stored as a tag on the root.
+     */
+    private static class RootPolicy {
+        int interruptionPolicy = INTERRUPTION_PARALLEL;
+        int maxRunningTransitions = 0;
+        long minTransitionInterval = 0;
+        long lastTransitionTime = -1;
+        // Changes held back until the minimum transition interval elapses, and the
+        // transition that animates them
+        final ArrayList<Runnable> throttledChanges = new ArrayList<Runnable>();
+        android.support.transition.Transition throttledTransition;
+        // Whether the held back changes are posted to run when the interval elapses
+        boolean throttledChangesPosted;
+        // Scene changes waiting for the running transitions to end, with INTERRUPTION_QUEUE
+        final ArrayList<android.support.transition.Scene> queuedScenes =
+                new ArrayList<android.support.transition.Scene>();
+        final ArrayList<android.support.transition.Transition> queuedTransitions =
+                new ArrayList<android.support.transition.Transition>();
+    }
 }
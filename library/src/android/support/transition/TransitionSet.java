@@ -53,6 +53,9 @@ public class TransitionSet extends android.support.transition.Transition {
     private boolean mPlayTogether = true;
     int mCurrentListeners;
     boolean mStarted = false;
+    // Set when the set is canceled, so that sequential children which have not
+    // started yet are skipped instead of being run
+    boolean mCanceled = false;
 
     /**
      * A flag used to indicate that the child transitions of this set
@@ -132,10 +135,78 @@ public class TransitionSet extends android.support.transition.Transition {
             if (mDuration >= 0) {
                 transition.setDuration(mDuration);
             }
+            if (mLayerPolicy != LAYER_POLICY_NONE) {
+                transition.setLayerPolicy(mLayerPolicy);
+            }
+            if (mCullOffscreenTargets) {
+                transition.setCullOffscreenTargets(true);
+            }
         }
         return this;
     }
 
+    /**
+     * Adds a child transition to this set after the start values of the set have
+     * already been captured. Instead of walking the hierarchy again, the child
+     * captures its start values into the TransitionValues already held by this
+     * set, so it shares the start state of the other children. Views that were
+     * not captured by this set are not captured for the child either.
+     *
+     * <p>The child also gets the state that was set up on this set for the
+     * current run: its scene root, whether it can remove views and whether it
+     * retargets running animators, besides the layer policy and the culling of
+     * offscreen targets that {@link #addTransition(android.support.transition.Transition)}
+     * passes on. The offscreen flags live in the shared start values.</p>
+     *
+     * <p>The views may have changed since the start values were captured, so the
+     * child only adds the properties that are not there yet: the values captured
+     * by the earlier children under the same names are kept.</p>
+     *
+     * @param transition A non-null child transition to be added to this set.
+     */
+    void addTransitionAfterCapture(android.support.transition.Transition transition) {
+        addTransition(transition);
+        if (mSceneRoot != null) {
+            transition.setSceneRoot(mSceneRoot);
+        }
+        transition.setCanRemoveViews(mCanRemoveViews);
+        transition.setRetargetRunningAnimators(mRetargetRunningAnimators);
+        TransitionValues scratchValues = new TransitionValues();
+        int numValues = mStartValues.viewValues.size();
+        for (int i = 0; i < numValues; ++i) {
+            TransitionValues values = mStartValues.viewValues.valueAt(i);
+            if (transition.isValidTarget(values.view, values.view.getId())) {
+                captureMissingStartValues(transition, values, scratchValues);
+            }
+        }
+        int numItemIdValues = mStartValues.itemIdValues.size();
+        for (int i = 0; i < numItemIdValues; ++i) {
+            TransitionValues values = mStartValues.itemIdValues.valueAt(i);
+            if (transition.isValidTarget(values.view, values.view.getId())) {
+                captureMissingStartValues(transition, values, scratchValues);
+            }
+        }
+    }
+
+    /**
+     * Captures the start values of a late child into the scratch values, and
+     * copies into the shared values only the properties they do not have yet.
+     */
+    private static void captureMissingStartValues(android.support.transition.Transition transition,
+            TransitionValues values, TransitionValues scratchValues) {
+        scratchValues.view = values.view;
+        scratchValues.offscreen = values.offscreen;
+        scratchValues.properties.clear();
+        transition.captureStartValues(scratchValues);
+        int numProperties = scratchValues.properties.size();
+        for (int i = 0; i < numProperties; ++i) {
+            int key = scratchValues.properties.propertyKeyAt(i);
+            if (!values.properties.containsKey(key)) {
+                values.properties.put(key, scratchValues.properties.valueAt(i));
+            }
+        }
+    }
+
     /**
      * Setting a non-negative duration on a TransitionSet causes all of the child
      * transitions (current and future) to inherit this duration.
@@ -155,6 +226,46 @@ public class TransitionSet extends android.support.transition.Transition {
         return this;
     }
 
+    /**
+     * Setting a layer policy other than {@link #LAYER_POLICY_NONE} on a
+     * TransitionSet causes all of the child transitions (current and future)
+     * to inherit this policy.
+     *
+     * @param layerPolicy The layer policy of the child transitions.
+     * @return This transitionSet object.
+     */
+    @Override
+    public TransitionSet setLayerPolicy(int layerPolicy) {
+        super.setLayerPolicy(layerPolicy);
+        if (mLayerPolicy != LAYER_POLICY_NONE) {
+            int numTransitions = mTransitions.size();
+            for (int i = 0; i < numTransitions; ++i) {
+                mTransitions.get(i).setLayerPolicy(layerPolicy);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Culling the offscreen targets of a TransitionSet causes all of the child
+     * transitions (current and future) to cull them as well.
+     *
+     * @param cullOffscreenTargets Whether the child transitions skip the
+     * offscreen targets.
+     * @return This transitionSet object.
+     */
+    @Override
+    public TransitionSet setCullOffscreenTargets(boolean cullOffscreenTargets) {
+        super.setCullOffscreenTargets(cullOffscreenTargets);
+        if (mCullOffscreenTargets) {
+            int numTransitions = mTransitions.size();
+            for (int i = 0; i < numTransitions; ++i) {
+                mTransitions.get(i).setCullOffscreenTargets(true);
+            }
+        }
+        return this;
+    }
+
     @Override
     public TransitionSet setStartDelay(long startDelay) {
         return (TransitionSet) super.setStartDelay(startDelay);
@@ -214,7 +325,9 @@ public class TransitionSet extends android.support.transition.Transition {
      */
     private void setupStartEndListeners() {
         TransitionSetListener listener = new TransitionSetListener(this);
-        for (android.support.transition.Transition childTransition : mTransitions) {
+        int numTransitions = mTransitions.size();
+        for (int i = 0; i < numTransitions; ++i) {
+            android.support.transition.Transition childTransition = mTransitions.get(i);
             childTransition.addListener(listener);
         }
         mCurrentListeners = mTransitions.size();
@@ -255,7 +368,9 @@ public class TransitionSet extends android.support.transition.Transition {
     @Override
     protected void createAnimators(ViewGroup sceneRoot, TransitionValuesMaps startValues,
             TransitionValuesMaps endValues) {
-        for (android.support.transition.Transition childTransition : mTransitions) {
+        int numTransitions = mTransitions.size();
+        for (int i = 0; i < numTransitions; ++i) {
+            android.support.transition.Transition childTransition = mTransitions.get(i);
             childTransition.createAnimators(sceneRoot, startValues, endValues);
         }
     }
@@ -275,7 +390,11 @@ public class TransitionSet extends android.support.transition.Transition {
                 previousTransition.addListener(new TransitionListenerAdapter() {
                     @Override
                     public void onTransitionEnd(android.support.transition.Transition transition) {
-                        nextTransition.runAnimators();
+                        if (mCanceled) {
+                            nextTransition.skipAnimators();
+                        } else {
+                            nextTransition.runAnimators();
+                        }
                         transition.removeListener(this);
                     }
                 });
@@ -285,7 +404,9 @@ public class TransitionSet extends android.support.transition.Transition {
                 firstTransition.runAnimators();
             }
         } else {
-            for (android.support.transition.Transition childTransition : mTransitions) {
+            int numTransitions = mTransitions.size();
+            for (int i = 0; i < numTransitions; ++i) {
+                android.support.transition.Transition childTransition = mTransitions.get(i);
                 childTransition.runAnimators();
             }
         }
@@ -295,7 +416,9 @@ public class TransitionSet extends android.support.transition.Transition {
     public void captureStartValues(TransitionValues transitionValues) {
         int targetId = transitionValues.view.getId();
         if (isValidTarget(transitionValues.view, targetId)) {
-            for (android.support.transition.Transition childTransition : mTransitions) {
+            int numTransitions = mTransitions.size();
+            for (int i = 0; i < numTransitions; ++i) {
+                android.support.transition.Transition childTransition = mTransitions.get(i);
                 if (childTransition.isValidTarget(transitionValues.view, targetId)) {
                     childTransition.captureStartValues(transitionValues);
                 }
@@ -307,7 +430,9 @@ public class TransitionSet extends android.support.transition.Transition {
     public void captureEndValues(TransitionValues transitionValues) {
         int targetId = transitionValues.view.getId();
         if (isValidTarget(transitionValues.view, targetId)) {
-            for (android.support.transition.Transition childTransition : mTransitions) {
+            int numTransitions = mTransitions.size();
+            for (int i = 0; i < numTransitions; ++i) {
+                android.support.transition.Transition childTransition = mTransitions.get(i);
                 if (childTransition.isValidTarget(transitionValues.view, targetId)) {
                     childTransition.captureEndValues(transitionValues);
                 }
@@ -338,6 +463,7 @@ public class TransitionSet extends android.support.transition.Transition {
     /** @hide */
     @Override
     protected void cancel() {
+        mCanceled = true;
         super.cancel();
         int numTransitions = mTransitions.size();
         for (int i = 0; i < numTransitions; ++i) {
@@ -364,6 +490,15 @@ public class TransitionSet extends android.support.transition.Transition {
         }
     }
 
+    @Override
+    void setRetargetRunningAnimators(boolean retarget) {
+        super.setRetargetRunningAnimators(retarget);
+        int numTransitions = mTransitions.size();
+        for (int i = 0; i < numTransitions; ++i) {
+            mTransitions.get(i).setRetargetRunningAnimators(retarget);
+        }
+    }
+
     @Override
     String toString(String indent) {
         String result = super.toString(indent);
@@ -377,6 +512,7 @@ public class TransitionSet extends android.support.transition.Transition {
     public TransitionSet clone() {
         TransitionSet clone = (TransitionSet) super.clone();
         clone.mTransitions = new ArrayList<android.support.transition.Transition>();
+        clone.mCanceled = false;
         int numTransitions = mTransitions.size();
         for (int i = 0; i < numTransitions; ++i) {
             clone.addTransition((android.support.transition.Transition) mTransitions.get(i).clone());
@@ -16,7 +16,7 @@
 
 package android.support.transition;
 
-import android.support.transition.utils.ArrayMap;
+import android.support.transition.utils.PropertyMap;
 import android.view.View;
 
 import java.util.Map;
@@ -47,15 +47,33 @@ public class TransitionValues {
     public View view;
 
     /**
-     * The set of values tracked by transitions for this scene
+     * The values tracked by transitions for this scene, keyed by the integer
+     * keys registered for their property names in
+     * {@link android.support.transition.utils.PropertyKeyRegistry}. This is the
+     * same map as {@link #values}, with the faster integer-keyed and indexed
+     * accessors.
      */
-    public final Map<String, Object> values = new ArrayMap<String, Object>();
+    public final PropertyMap properties = new PropertyMap();
+
+    /**
+     * The set of values tracked by transitions for this scene, by property name.
+     * Backed by {@link #properties}.
+     */
+    public final Map<String, Object> values = properties;
+
+    /**
+     * Whether the view was entirely outside of the visible area of the scene
+     * root when these values were captured. Only set by transitions that
+     * {@link android.support.transition.Transition#setCullOffscreenTargets(boolean)
+     * cull offscreen targets}, and not part of the compared values.
+     */
+    boolean offscreen;
 
     @Override
     public boolean equals(Object other) {
         if (other instanceof TransitionValues) {
             if (view == ((TransitionValues) other).view) {
-                if (values.equals(((TransitionValues) other).values)) {
+                if (properties.equals(((TransitionValues) other).properties)) {
                     return true;
                 }
             }
@@ -65,7 +83,7 @@ public class TransitionValues {
 
     @Override
     public int hashCode() {
-        return 31*view.hashCode() + values.hashCode();
+        return 31*view.hashCode() + properties.hashCode();
     }
 
     @Override
@@ -73,8 +91,9 @@ public class TransitionValues {
         String returnValue = "TransitionValues@" + Integer.toHexString(hashCode()) + ":\n";
         returnValue += "    view = " + view + "\n";
         returnValue += "    values:";
-        for (String s : values.keySet()) {
-            returnValue += "    " + s + ": " + values.get(s) + "\n";
+        int numValues = properties.size();
+        for (int i = 0; i < numValues; ++i) {
+            returnValue += "    " + properties.keyAt(i) + ": " + properties.valueAt(i) + "\n";
         }
         return returnValue;
     }
@@ -16,15 +16,16 @@
 
 package android.support.transition;
 
-import android.support.v4.util.LongSparseArray;
-import android.support.transition.utils.ArrayMap;
-import android.util.SparseArray;
+import android.support.transition.utils.IdentityArrayMap;
+import android.support.transition.utils.IntObjectMap;
+import android.support.transition.utils.LongObjectMap;
 import android.view.View;
 
 class TransitionValuesMaps {
-    ArrayMap<View, TransitionValues> viewValues =
-            new ArrayMap<View, android.support.transition.TransitionValues>();
-    SparseArray<android.support.transition.TransitionValues> idValues = new SparseArray<android.support.transition.TransitionValues>();
-    LongSparseArray<android.support.transition.TransitionValues> itemIdValues =
-            new LongSparseArray<TransitionValues>();
+    IdentityArrayMap<View, TransitionValues> viewValues =
+            new IdentityArrayMap<View, android.support.transition.TransitionValues>();
+    IntObjectMap<android.support.transition.TransitionValues> idValues =
+            new IntObjectMap<android.support.transition.TransitionValues>();
+    LongObjectMap<android.support.transition.TransitionValues> itemIdValues =
+            new LongObjectMap<TransitionValues>();
 }
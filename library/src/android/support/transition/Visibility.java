@@ -17,6 +17,7 @@
 package android.support.transition;
 
 import android.animation.Animator;
+import android.support.transition.utils.PropertyKeyRegistry;
 import android.view.View;
 import android.view.ViewGroup;
 
@@ -35,6 +36,10 @@ public abstract class Visibility extends android.support.transition.Transition {
 
     private static final String PROPNAME_VISIBILITY = "android:visibility:visibility";
     private static final String PROPNAME_PARENT = "android:visibility:parent";
+    private static final int PROPKEY_VISIBILITY =
+            PropertyKeyRegistry.register(PROPNAME_VISIBILITY);
+    private static final int PROPKEY_PARENT =
+            PropertyKeyRegistry.register(PROPNAME_PARENT);
     private static final String[] sTransitionProperties = {
             PROPNAME_VISIBILITY,
             PROPNAME_PARENT,
@@ -56,8 +61,8 @@ public abstract class Visibility extends android.support.transition.Transition {
 
     private void captureValues(android.support.transition.TransitionValues transitionValues) {
         int visibility = transitionValues.view.getVisibility();
-        transitionValues.values.put(PROPNAME_VISIBILITY, visibility);
-        transitionValues.values.put(PROPNAME_PARENT, transitionValues.view.getParent());
+        transitionValues.properties.put(PROPKEY_VISIBILITY, visibility);
+        transitionValues.properties.put(PROPKEY_PARENT, transitionValues.view.getParent());
     }
 
     @Override
@@ -89,8 +94,8 @@ public abstract class Visibility extends android.support.transition.Transition {
         if (values == null) {
             return false;
         }
-        int visibility = (Integer) values.values.get(PROPNAME_VISIBILITY);
-        View parent = (View) values.values.get(PROPNAME_PARENT);
+        int visibility = (Integer) values.properties.get(PROPKEY_VISIBILITY);
+        View parent = (View) values.properties.get(PROPKEY_PARENT);
 
         return visibility == View.VISIBLE && parent != null;
     }
@@ -101,15 +106,15 @@ public abstract class Visibility extends android.support.transition.Transition {
         visInfo.visibilityChange = false;
         visInfo.fadeIn = false;
         if (startValues != null) {
-            visInfo.startVisibility = (Integer) startValues.values.get(PROPNAME_VISIBILITY);
-            visInfo.startParent = (ViewGroup) startValues.values.get(PROPNAME_PARENT);
+            visInfo.startVisibility = (Integer) startValues.properties.get(PROPKEY_VISIBILITY);
+            visInfo.startParent = (ViewGroup) startValues.properties.get(PROPKEY_PARENT);
         } else {
             visInfo.startVisibility = -1;
             visInfo.startParent = null;
         }
         if (endValues != null) {
-            visInfo.endVisibility = (Integer) endValues.values.get(PROPNAME_VISIBILITY);
-            visInfo.endParent = (ViewGroup) endValues.values.get(PROPNAME_PARENT);
+            visInfo.endVisibility = (Integer) endValues.properties.get(PROPKEY_VISIBILITY);
+            visInfo.endParent = (ViewGroup) endValues.properties.get(PROPKEY_PARENT);
         } else {
             visInfo.endVisibility = -1;
             visInfo.endParent = null;
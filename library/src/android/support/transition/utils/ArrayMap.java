@@ -21,6 +21,7 @@ import android.util.Log;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * ArrayMap is a generic key->value mapping data structure that is
@@ -65,15 +66,41 @@ public final class ArrayMap<K, V> implements Map<K, V> {
     public static final ArrayMap EMPTY = new ArrayMap(true);
 
     /**
-     * Caches of small array objects to avoid spamming garbage.  The cache
-     * Object[] variable is a pointer to a linked list of array objects.
-     * The first entry in the array is a pointer to the next array in the
-     * list; the second entry is a pointer to the int[] hash code array for it.
+     * Maximum number of entries of each size in the cache shared by all threads.
      */
-    static Object[] mBaseCache;
-    static int mBaseCacheSize;
-    static Object[] mTwiceBaseCache;
-    static int mTwiceBaseCacheSize;
+    private static final int SHARED_CACHE_SIZE = 16;
+
+    /**
+     * Caches of small array objects to avoid spamming garbage. Each thread first
+     * recycles arrays through its own {@link ArrayCache}, which needs no locking.
+     * Arrays that don't fit in a full thread cache go to a small cache shared by
+     * all threads, whose slots are taken and filled with atomic operations, so
+     * that arrays freed on one thread can still be reused on another.
+     */
+    private static final ThreadLocal<ArrayCache> sThreadCache = new ThreadLocal<ArrayCache>() {
+        @Override
+        protected ArrayCache initialValue() {
+            return new ArrayCache();
+        }
+    };
+    static final AtomicReferenceArray<Object[]> sSharedBaseCache =
+            new AtomicReferenceArray<Object[]>(SHARED_CACHE_SIZE);
+    static final AtomicReferenceArray<Object[]> sSharedTwiceBaseCache =
+            new AtomicReferenceArray<Object[]>(SHARED_CACHE_SIZE);
+
+    /**
+     * Per-thread cache. Each Object[] variable is a pointer to a linked list of
+     * array objects. The first entry in the array is a pointer to the next array
+     * in the list; the second entry is a pointer to the int[] hash code array for it.
+     */
+    static final class ArrayCache {
+        Object[] mBaseCache;
+        int mBaseCacheSize;
+        Object[] mTwiceBaseCache;
+        int mTwiceBaseCacheSize;
+        // Where this thread starts probing the shared caches, to spread threads
+        final int mSharedStart = (int) Thread.currentThread().getId() & (SHARED_CACHE_SIZE - 1);
+    }
 
     /**
      * Special hash array value that indicates the container is immutable.
@@ -166,32 +193,38 @@ public final class ArrayMap<K, V> implements Map<K, V> {
             throw new UnsupportedOperationException("ArrayMap is immutable");
         }
         if (size == (BASE_SIZE*2)) {
-            synchronized (ArrayMap.class) {
-                if (mTwiceBaseCache != null) {
-                    final Object[] array = mTwiceBaseCache;
-                    mArray = array;
-                    mTwiceBaseCache = (Object[])array[0];
-                    mHashes = (int[])array[1];
-                    array[0] = array[1] = null;
-                    mTwiceBaseCacheSize--;
-                    if (DEBUG) Log.d(TAG, "Retrieving 2x cache " + mHashes
-                            + " now have " + mTwiceBaseCacheSize + " entries");
-                    return;
-                }
+            final ArrayCache cache = sThreadCache.get();
+            Object[] array = cache.mTwiceBaseCache;
+            if (array != null) {
+                cache.mTwiceBaseCache = (Object[])array[0];
+                cache.mTwiceBaseCacheSize--;
+            } else {
+                array = takeShared(sSharedTwiceBaseCache, cache.mSharedStart);
+            }
+            if (array != null) {
+                mArray = array;
+                mHashes = (int[])array[1];
+                array[0] = array[1] = null;
+                if (DEBUG) Log.d(TAG, "Retrieving 2x cache " + mHashes
+                        + " now have " + cache.mTwiceBaseCacheSize + " entries");
+                return;
             }
         } else if (size == BASE_SIZE) {
-            synchronized (ArrayMap.class) {
-                if (mBaseCache != null) {
-                    final Object[] array = mBaseCache;
-                    mArray = array;
-                    mBaseCache = (Object[])array[0];
-                    mHashes = (int[])array[1];
-                    array[0] = array[1] = null;
-                    mBaseCacheSize--;
-                    if (DEBUG) Log.d(TAG, "Retrieving 1x cache " + mHashes
-                            + " now have " + mBaseCacheSize + " entries");
-                    return;
-                }
+            final ArrayCache cache = sThreadCache.get();
+            Object[] array = cache.mBaseCache;
+            if (array != null) {
+                cache.mBaseCache = (Object[])array[0];
+                cache.mBaseCacheSize--;
+            } else {
+                array = takeShared(sSharedBaseCache, cache.mSharedStart);
+            }
+            if (array != null) {
+                mArray = array;
+                mHashes = (int[])array[1];
+                array[0] = array[1] = null;
+                if (DEBUG) Log.d(TAG, "Retrieving 1x cache " + mHashes
+                        + " now have " + cache.mBaseCacheSize + " entries");
+                return;
             }
         }
 
@@ -201,36 +234,62 @@ public final class ArrayMap<K, V> implements Map<K, V> {
 
     private static void freeArrays(final int[] hashes, final Object[] array, final int size) {
         if (hashes.length == (BASE_SIZE*2)) {
-            synchronized (ArrayMap.class) {
-                if (mTwiceBaseCacheSize < CACHE_SIZE) {
-                    array[0] = mTwiceBaseCache;
-                    array[1] = hashes;
-                    for (int i=(size<<1)-1; i>=2; i--) {
-                        array[i] = null;
-                    }
-                    mTwiceBaseCache = array;
-                    mTwiceBaseCacheSize++;
-                    if (DEBUG) Log.d(TAG, "Storing 2x cache " + array
-                            + " now have " + mTwiceBaseCacheSize + " entries");
-                }
+            for (int i=(size<<1)-1; i>=2; i--) {
+                array[i] = null;
+            }
+            array[1] = hashes;
+            final ArrayCache cache = sThreadCache.get();
+            if (cache.mTwiceBaseCacheSize < CACHE_SIZE) {
+                array[0] = cache.mTwiceBaseCache;
+                cache.mTwiceBaseCache = array;
+                cache.mTwiceBaseCacheSize++;
+                if (DEBUG) Log.d(TAG, "Storing 2x cache " + array
+                        + " now have " + cache.mTwiceBaseCacheSize + " entries");
+            } else {
+                array[0] = null;
+                putShared(sSharedTwiceBaseCache, cache.mSharedStart, array);
             }
         } else if (hashes.length == BASE_SIZE) {
-            synchronized (ArrayMap.class) {
-                if (mBaseCacheSize < CACHE_SIZE) {
-                    array[0] = mBaseCache;
-                    array[1] = hashes;
-                    for (int i=(size<<1)-1; i>=2; i--) {
-                        array[i] = null;
-                    }
-                    mBaseCache = array;
-                    mBaseCacheSize++;
-                    if (DEBUG) Log.d(TAG, "Storing 1x cache " + array
-                            + " now have " + mBaseCacheSize + " entries");
-                }
+            for (int i=(size<<1)-1; i>=2; i--) {
+                array[i] = null;
+            }
+            array[1] = hashes;
+            final ArrayCache cache = sThreadCache.get();
+            if (cache.mBaseCacheSize < CACHE_SIZE) {
+                array[0] = cache.mBaseCache;
+                cache.mBaseCache = array;
+                cache.mBaseCacheSize++;
+                if (DEBUG) Log.d(TAG, "Storing 1x cache " + array
+                        + " now have " + cache.mBaseCacheSize + " entries");
+            } else {
+                array[0] = null;
+                putShared(sSharedBaseCache, cache.mSharedStart, array);
             }
         }
     }
 
+    private static Object[] takeShared(AtomicReferenceArray<Object[]> cache, int start) {
+        for (int i = 0; i < SHARED_CACHE_SIZE; i++) {
+            final int slot = (start + i) & (SHARED_CACHE_SIZE - 1);
+            final Object[] array = cache.get(slot);
+            if (array != null && cache.compareAndSet(slot, array, null)) {
+                return array;
+            }
+        }
+        return null;
+    }
+
+    private static void putShared(AtomicReferenceArray<Object[]> cache, int start,
+            Object[] array) {
+        for (int i = 0; i < SHARED_CACHE_SIZE; i++) {
+            final int slot = (start + i) & (SHARED_CACHE_SIZE - 1);
+            if (cache.get(slot) == null && cache.compareAndSet(slot, null, array)) {
+                return;
+            }
+        }
+        // Shared cache full, let the array be collected
+    }
+
     /**
      * Create a new empty ArrayMap.  The default capacity of an array map is 0, and
      * will grow once items are added to it.
@@ -762,6 +821,10 @@ public final class ArrayMap<K, V> implements Map<K, V> {
      */
     @Override
     public void putAll(Map<? extends K, ? extends V> map) {
+        if (map instanceof ArrayMap) {
+            putAll((ArrayMap<? extends K, ? extends V>) map);
+            return;
+        }
         ensureCapacity(mSize + map.size());
         for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
             put(entry.getKey(), entry.getValue());
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.support.v4.util.LongSparseArray;
+
+import java.util.ArrayList;
+
+/**
+ * A pool of bitmaps for the snapshots taken by transitions. Snapshots are
+ * borrowed with {@link #acquire(int, int, android.graphics.Bitmap.Config)} and
+ * given back with {@link #release(android.graphics.Bitmap)} once the animator
+ * that draws them has ended, so that the next transition can draw into them
+ * instead of allocating new bitmaps.
+ *
+ * <p>Bitmaps are kept in buckets of the same width, height and configuration.
+ * The pool holds at most {@link #getMaxSize()} bytes of bitmaps; when a released
+ * bitmap goes over that budget, the least recently released bitmaps are
+ * recycled.</p>
+ */
+public final class BitmapPool {
+    private static final BitmapPool sInstance =
+            new BitmapPool((int) Math.min(Runtime.getRuntime().maxMemory() / 16, 8 * 1024 * 1024));
+
+    // Pooled bitmaps by size and configuration, most recently released last
+    private final LongSparseArray<ArrayList<Bitmap>> mBuckets =
+            new LongSparseArray<ArrayList<Bitmap>>();
+    // All pooled bitmaps, least recently released first
+    private final ArrayList<Bitmap> mLruBitmaps = new ArrayList<Bitmap>();
+    private int mMaxSize;
+    private int mSize;
+
+    BitmapPool(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Returns the pool shared by all transitions.
+     */
+    public static BitmapPool getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Sets the maximum number of bytes of bitmaps that the pool holds. Bitmaps
+     * are recycled until the pool fits in the new budget.
+     *
+     * @param maxSize The maximum size of the pool in bytes, 0 to disable pooling.
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        mMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    /**
+     * Returns the maximum number of bytes of bitmaps that the pool holds.
+     */
+    public synchronized int getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Returns a mutable bitmap of the given size and configuration, cleared to
+     * transparent. The bitmap comes from the pool when one matches, otherwise
+     * it is allocated.
+     */
+    public Bitmap acquire(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = null;
+        synchronized (this) {
+            ArrayList<Bitmap> bucket = mBuckets.get(getKey(width, height, config));
+            if (bucket != null && bucket.size() > 0) {
+                bitmap = bucket.remove(bucket.size() - 1);
+                mLruBitmaps.remove(bitmap);
+                mSize -= getSize(bitmap);
+            }
+        }
+        if (bitmap != null) {
+            bitmap.eraseColor(Color.TRANSPARENT);
+            return bitmap;
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Gives a bitmap back to the pool. The caller must not use the bitmap
+     * afterwards. Immutable and recycled bitmaps are ignored.
+     */
+    public void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+        int size = getSize(bitmap);
+        synchronized (this) {
+            if (mLruBitmaps.contains(bitmap)) {
+                // Already released
+                return;
+            }
+            if (size <= mMaxSize) {
+                long key = getKey(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+                ArrayList<Bitmap> bucket = mBuckets.get(key);
+                if (bucket == null) {
+                    bucket = new ArrayList<Bitmap>();
+                    mBuckets.put(key, bucket);
+                }
+                bucket.add(bitmap);
+                mLruBitmaps.add(bitmap);
+                mSize += size;
+                trimToSize(mMaxSize);
+                return;
+            }
+        }
+        bitmap.recycle();
+    }
+
+    /**
+     * Recycles all the bitmaps of the pool.
+     */
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    private void trimToSize(int maxSize) {
+        while (mSize > maxSize && !mLruBitmaps.isEmpty()) {
+            Bitmap bitmap = mLruBitmaps.remove(0);
+            mBuckets.get(getKey(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig()))
+                    .remove(bitmap);
+            mSize -= getSize(bitmap);
+            bitmap.recycle();
+        }
+    }
+
+    private static long getKey(int width, int height, Bitmap.Config config) {
+        return ((long) width << 32) | ((long) height << 4) | (config != null ? config.ordinal() : 0xF);
+    }
+
+    private static int getSize(Bitmap bitmap) {
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+}
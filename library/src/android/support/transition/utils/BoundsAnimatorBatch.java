@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition.utils;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.TimeInterpolator;
+import android.animation.ValueAnimator;
+import android.os.Build;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Animates the bounds of many views with a single ValueAnimator. The start and
+ * end bounds of the views are kept in int arrays, and one update listener sets
+ * the bounds of all of them on each frame.
+ *
+ * <p>Each view still gets its own {@link BoundsAnimator}, a lightweight Animator
+ * that transitions can start, cancel, end, pause and track like any other. The
+ * shared ValueAnimator starts with the first of them, with its duration, start
+ * delay and interpolator, and stops once all of them are done. Pausing one of
+ * them freezes its view, which catches up with the others when it is resumed.
+ * Transitions do not pause their animators yet, so this only happens when the
+ * animator is paused directly.</p>
+ */
+public class BoundsAnimatorBatch {
+    private View[] mViews = new View[8];
+    private BoundsAnimator[] mAnimators = new BoundsAnimator[8];
+    // Left, top, right and bottom of each view, one after the other
+    private int[] mStartBounds = new int[32];
+    private int[] mEndBounds = new int[32];
+    private int mCount;
+    // Number of animators started and not done yet
+    private int mRunningCount;
+    private ValueAnimator mDriver;
+
+    /**
+     * Adds a view to the batch, and returns the animator of its bounds.
+     */
+    public BoundsAnimator add(View view, int startLeft, int startTop, int startRight,
+            int startBottom, int endLeft, int endTop, int endRight, int endBottom) {
+        if (mDriver != null) {
+            throw new IllegalStateException("Views cannot be added once the batch has started");
+        }
+        if (mCount == mViews.length) {
+            mViews = Arrays.copyOf(mViews, mCount * 2);
+            mAnimators = Arrays.copyOf(mAnimators, mCount * 2);
+            mStartBounds = Arrays.copyOf(mStartBounds, mCount * 8);
+            mEndBounds = Arrays.copyOf(mEndBounds, mCount * 8);
+        }
+        int i = mCount * 4;
+        mStartBounds[i] = startLeft;
+        mStartBounds[i + 1] = startTop;
+        mStartBounds[i + 2] = startRight;
+        mStartBounds[i + 3] = startBottom;
+        mEndBounds[i] = endLeft;
+        mEndBounds[i + 1] = endTop;
+        mEndBounds[i + 2] = endRight;
+        mEndBounds[i + 3] = endBottom;
+        BoundsAnimator animator = new BoundsAnimator(this, mCount);
+        mViews[mCount] = view;
+        mAnimators[mCount] = animator;
+        mCount++;
+        return animator;
+    }
+
+    /**
+     * Returns the number of views in the batch.
+     */
+    public int size() {
+        return mCount;
+    }
+
+    private void start(BoundsAnimator animator) {
+        if (mDriver == null) {
+            mDriver = ValueAnimator.ofFloat(0, 1);
+            if (animator.mDuration >= 0) {
+                mDriver.setDuration(animator.mDuration);
+            }
+            mDriver.setStartDelay(animator.mStartDelay);
+            if (animator.mInterpolator != null) {
+                mDriver.setInterpolator(animator.mInterpolator);
+            }
+            mDriver.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+                @Override
+                public void onAnimationUpdate(ValueAnimator animation) {
+                    setBounds(animation.getAnimatedFraction());
+                }
+            });
+            mDriver.addListener(new AnimatorListenerAdapter() {
+                @Override
+                public void onAnimationEnd(Animator animation) {
+                    // Views that are still animating reach their end bounds
+                    for (int i = 0; i < mCount; i++) {
+                        BoundsAnimator animator = mAnimators[i];
+                        if (animator.mStarted) {
+                            setBounds(i, 1);
+                            animator.finish(false);
+                        }
+                    }
+                }
+            });
+            mRunningCount++;
+            animator.mStarted = true;
+            animator.notifyStart();
+            mDriver.start();
+        } else {
+            mRunningCount++;
+            animator.mStarted = true;
+            animator.notifyStart();
+            if (!mDriver.isStarted()) {
+                // The driver is already done, the view goes straight to its end bounds
+                setBounds(animator.mIndex, 1);
+                animator.finish(false);
+            }
+        }
+    }
+
+    private void setBounds(float fraction) {
+        for (int i = 0; i < mCount; i++) {
+            BoundsAnimator animator = mAnimators[i];
+            if (animator.mStarted && !animator.mPaused) {
+                setBounds(i, fraction);
+            }
+        }
+    }
+
+    private void setBounds(int index, float fraction) {
+        View view = mViews[index];
+        int i = index * 4;
+        view.setLeft(mStartBounds[i] + (int) (fraction * (mEndBounds[i] - mStartBounds[i])));
+        view.setTop(mStartBounds[i + 1] +
+                (int) (fraction * (mEndBounds[i + 1] - mStartBounds[i + 1])));
+        view.setRight(mStartBounds[i + 2] +
+                (int) (fraction * (mEndBounds[i + 2] - mStartBounds[i + 2])));
+        view.setBottom(mStartBounds[i + 3] +
+                (int) (fraction * (mEndBounds[i + 3] - mStartBounds[i + 3])));
+    }
+
+    /**
+     * Called when an animator of the batch is done, stops the shared
+     * ValueAnimator when it was the last one running.
+     */
+    private void onAnimatorDone() {
+        if (--mRunningCount == 0 && mDriver != null && mDriver.isStarted()) {
+            mDriver.cancel();
+        }
+    }
+
+    /**
+     * The animator of the bounds of one view of a {@link BoundsAnimatorBatch}.
+     */
+    public static class BoundsAnimator extends Animator {
+        private final BoundsAnimatorBatch mBatch;
+        private final int mIndex;
+        long mDuration = -1;
+        long mStartDelay;
+        TimeInterpolator mInterpolator;
+        boolean mStarted;
+        boolean mPaused;
+        // Pause listeners, which only exist from API 19. Those of Animator can only
+        // be notified by its own pause() and resume(), which older versions lack.
+        private ArrayList<Object> mPauseListeners;
+
+        BoundsAnimator(BoundsAnimatorBatch batch, int index) {
+            mBatch = batch;
+            mIndex = index;
+        }
+
+        /**
+         * Returns the view whose bounds this animator animates.
+         */
+        public View getView() {
+            return mBatch.mViews[mIndex];
+        }
+
+        @Override
+        public void start() {
+            if (!mStarted) {
+                mBatch.start(this);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (mStarted) {
+                ArrayList<AnimatorListener> listeners = getListeners();
+                if (listeners != null) {
+                    ArrayList<AnimatorListener> tmpListeners =
+                            new ArrayList<AnimatorListener>(listeners);
+                    for (int i = 0; i < tmpListeners.size(); i++) {
+                        tmpListeners.get(i).onAnimationCancel(this);
+                    }
+                }
+                finish(true);
+            }
+        }
+
+        @Override
+        public void end() {
+            if (!mStarted) {
+                start();
+            }
+            if (mStarted) {
+                mBatch.setBounds(mIndex, 1);
+                finish(true);
+            }
+        }
+
+        @Override
+        public void pause() {
+            if (mStarted && !mPaused) {
+                mPaused = true;
+                if (mPauseListeners != null &&
+                        Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                    PauseListenerNotifier.notifyPause(this, mPauseListeners);
+                }
+            }
+        }
+
+        @Override
+        public void resume() {
+            if (mPaused) {
+                mPaused = false;
+                if (mPauseListeners != null &&
+                        Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                    PauseListenerNotifier.notifyResume(this, mPauseListeners);
+                }
+            }
+        }
+
+        @Override
+        public boolean isPaused() {
+            return mPaused;
+        }
+
+        @Override
+        public void addPauseListener(AnimatorPauseListener listener) {
+            if (mPauseListeners == null) {
+                mPauseListeners = new ArrayList<Object>();
+            }
+            mPauseListeners.add(listener);
+        }
+
+        @Override
+        public void removePauseListener(AnimatorPauseListener listener) {
+            if (mPauseListeners != null) {
+                mPauseListeners.remove(listener);
+                if (mPauseListeners.isEmpty()) {
+                    mPauseListeners = null;
+                }
+            }
+        }
+
+        @Override
+        public void removeAllListeners() {
+            super.removeAllListeners();
+            mPauseListeners = null;
+        }
+
+        private void notifyStart() {
+            ArrayList<AnimatorListener> listeners = getListeners();
+            if (listeners != null) {
+                ArrayList<AnimatorListener> tmpListeners =
+                        new ArrayList<AnimatorListener>(listeners);
+                for (int i = 0; i < tmpListeners.size(); i++) {
+                    tmpListeners.get(i).onAnimationStart(this);
+                }
+            }
+        }
+
+        /**
+         * Marks this animator as done and sends out the end notifications.
+         *
+         * @param stopBatch Whether the shared ValueAnimator may be stopped if
+         * this was the last animator running.
+         */
+        void finish(boolean stopBatch) {
+            mStarted = false;
+            mPaused = false;
+            ArrayList<AnimatorListener> listeners = getListeners();
+            if (listeners != null) {
+                ArrayList<AnimatorListener> tmpListeners =
+                        new ArrayList<AnimatorListener>(listeners);
+                for (int i = 0; i < tmpListeners.size(); i++) {
+                    tmpListeners.get(i).onAnimationEnd(this);
+                }
+            }
+            if (stopBatch) {
+                mBatch.onAnimatorDone();
+            } else {
+                mBatch.mRunningCount--;
+            }
+        }
+
+        @Override
+        public long getStartDelay() {
+            return mStartDelay;
+        }
+
+        @Override
+        public void setStartDelay(long startDelay) {
+            mStartDelay = startDelay;
+        }
+
+        @Override
+        public BoundsAnimator setDuration(long duration) {
+            mDuration = duration;
+            return this;
+        }
+
+        @Override
+        public long getDuration() {
+            return mDuration;
+        }
+
+        @Override
+        public void setInterpolator(TimeInterpolator interpolator) {
+            mInterpolator = interpolator;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return mStarted && mBatch.mDriver != null && mBatch.mDriver.isRunning();
+        }
+
+        @Override
+        public boolean isStarted() {
+            return mStarted;
+        }
+    }
+
+    /**
+     * Sends out the notifications of {@link Animator.AnimatorPauseListener},
+     * which only exists from API 19. Kept apart so that older versions never
+     * load it.
+     */
+    private static class PauseListenerNotifier {
+        static void notifyPause(Animator animator, ArrayList<Object> listeners) {
+            ArrayList<Object> tmpListeners = new ArrayList<Object>(listeners);
+            for (int i = 0; i < tmpListeners.size(); i++) {
+                ((Animator.AnimatorPauseListener) tmpListeners.get(i)).onAnimationPause(animator);
+            }
+        }
+
+        static void notifyResume(Animator animator, ArrayList<Object> listeners) {
+            ArrayList<Object> tmpListeners = new ArrayList<Object>(listeners);
+            for (int i = 0; i < tmpListeners.size(); i++) {
+                ((Animator.AnimatorPauseListener) tmpListeners.get(i)).onAnimationResume(animator);
+            }
+        }
+    }
+}
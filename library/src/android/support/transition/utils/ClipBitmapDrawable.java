@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition.utils;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
+
+/**
+ * A BitmapDrawable that only draws the part of its bitmap within clip bounds,
+ * which are relative to the top-left corner of the drawable. It stands in for
+ * a view animated with <code>View.setClipBounds()</code> on versions before
+ * API 18, where that method does not exist.
+ */
+public class ClipBitmapDrawable extends BitmapDrawable {
+    private final Rect mClipBounds = new Rect();
+    private boolean mClipped;
+
+    public ClipBitmapDrawable(Resources res, Bitmap bitmap) {
+        super(res, bitmap);
+    }
+
+    /**
+     * Sets the clip bounds of the drawable, relative to its top-left corner.
+     */
+    public void setClipBounds(int left, int top, int right, int bottom) {
+        if (!mClipped || mClipBounds.left != left || mClipBounds.top != top ||
+                mClipBounds.right != right || mClipBounds.bottom != bottom) {
+            mClipBounds.set(left, top, right, bottom);
+            mClipped = true;
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * Removes the clip bounds of the drawable, which then draws all of its bitmap.
+     */
+    public void clearClipBounds() {
+        if (mClipped) {
+            mClipped = false;
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        if (!mClipped) {
+            super.draw(canvas);
+            return;
+        }
+        Rect bounds = getBounds();
+        int saveCount = canvas.save();
+        canvas.clipRect(bounds.left + mClipBounds.left, bounds.top + mClipBounds.top,
+                bounds.left + mClipBounds.right, bounds.top + mClipBounds.bottom);
+        super.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+}
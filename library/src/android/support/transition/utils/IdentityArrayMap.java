@@ -0,0 +1,465 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition.utils;
+
+import java.util.Arrays;
+
+/**
+ * IdentityArrayMap is a key->value mapping that compares keys by identity and
+ * adapts its lookup structure to its size. Like {@link ArrayMap}, it keeps its
+ * mappings in compact arrays, here one for the keys and one for the values, in
+ * insertion order. Small maps are searched linearly. Once the map grows past
+ * {@link #HASH_THRESHOLD} entries, it also maintains an open-addressing table of
+ * indices into those arrays, keyed by identity hash code, so that lookups,
+ * insertions and removals take constant time instead of a binary search plus an
+ * array copy.
+ *
+ * <p>Removing a mapping moves the last mapping into its place, so the index of
+ * a mapping may change when another mapping is removed.</p>
+ *
+ * <p>Mappings put between {@link #beginBatch()} and {@link #endBatch()} are
+ * simply appended, without looking for an existing mapping of the same key.
+ * They are merged, keeping the last value put for each key, when the batch ends
+ * or when the map is next queried, whichever comes first. This is meant for
+ * building a map in one pass, where keys are rarely put twice.</p>
+ */
+public final class IdentityArrayMap<K, V> {
+    /**
+     * The size above which lookups go through the hash table rather than a
+     * linear search of the keys.
+     */
+    public static final int HASH_THRESHOLD = 16;
+
+    /**
+     * The minimum amount by which the capacity of an IdentityArrayMap will increase.
+     */
+    private static final int BASE_SIZE = 4;
+
+    Object[] mKeys;
+    Object[] mValues;
+    int mSize;
+    // Number of leading mappings that are merged and present in mTable, if any
+    int mIndexedSize;
+    // Open-addressing table of (index + 1) into mKeys, 0 for a free slot. Its length
+    // is a power of two, at least twice the number of indexed mappings.
+    int[] mTable;
+    boolean mBatching;
+
+    /**
+     * Create a new empty IdentityArrayMap.
+     */
+    public IdentityArrayMap() {
+        mKeys = ContainerHelpers.EMPTY_OBJECTS;
+        mValues = ContainerHelpers.EMPTY_OBJECTS;
+    }
+
+    /**
+     * Create a new IdentityArrayMap with a given initial capacity.
+     */
+    public IdentityArrayMap(int capacity) {
+        if (capacity <= 0) {
+            mKeys = ContainerHelpers.EMPTY_OBJECTS;
+            mValues = ContainerHelpers.EMPTY_OBJECTS;
+        } else {
+            mKeys = new Object[capacity];
+            mValues = new Object[capacity];
+        }
+    }
+
+    /**
+     * Create a new IdentityArrayMap with the mappings from the given map.
+     */
+    public IdentityArrayMap(IdentityArrayMap<K, V> map) {
+        map.mergePending();
+        int capacity = Math.max(map.mSize, BASE_SIZE);
+        mKeys = Arrays.copyOf(map.mKeys, capacity);
+        mValues = Arrays.copyOf(map.mValues, capacity);
+        mSize = map.mSize;
+        mIndexedSize = map.mIndexedSize;
+        if (map.mTable != null) {
+            mTable = map.mTable.clone();
+        }
+    }
+
+    /**
+     * Start appending mappings without checking for existing keys.
+     */
+    public void beginBatch() {
+        mBatching = true;
+    }
+
+    /**
+     * Stop appending mappings without checking for existing keys, and merge
+     * the mappings put since {@link #beginBatch()}.
+     */
+    public void endBatch() {
+        mBatching = false;
+        mergePending();
+    }
+
+    /**
+     * Make the array map empty. The hash table, if any, is kept for reuse.
+     */
+    public void clear() {
+        if (mSize > 0) {
+            Arrays.fill(mKeys, 0, mSize, null);
+            Arrays.fill(mValues, 0, mSize, null);
+            mSize = 0;
+            mIndexedSize = 0;
+        }
+        if (mTable != null) {
+            Arrays.fill(mTable, 0);
+        }
+    }
+
+    /**
+     * Ensure the array map can hold at least <var>minimumCapacity</var>
+     * items.
+     */
+    public void ensureCapacity(int minimumCapacity) {
+        if (mKeys.length < minimumCapacity) {
+            mKeys = Arrays.copyOf(mKeys, minimumCapacity);
+            mValues = Arrays.copyOf(mValues, minimumCapacity);
+        }
+    }
+
+    /**
+     * Check whether a key exists in the array.
+     *
+     * @param key The key to search for.
+     * @return Returns true if the key exists, else false.
+     */
+    public boolean containsKey(Object key) {
+        return indexOfKey(key) >= 0;
+    }
+
+    /**
+     * Returns the index of a key in the set.
+     *
+     * @param key The key to search for.
+     * @return Returns the index of the key if it exists, else a negative integer.
+     */
+    public int indexOfKey(Object key) {
+        mergePending();
+        return indexOf(key, mSize);
+    }
+
+    /**
+     * Retrieve a value from the array.
+     * @param key The key of the value to retrieve.
+     * @return Returns the value associated with the given key,
+     * or null if there is no such key.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        final int index = indexOfKey(key);
+        return index >= 0 ? (V) mValues[index] : null;
+    }
+
+    /**
+     * Return the key at the given index in the array.
+     * @param index The desired index, must be between 0 and {@link #size()}-1.
+     * @return Returns the key stored at the given index.
+     */
+    @SuppressWarnings("unchecked")
+    public K keyAt(int index) {
+        mergePending();
+        return (K) mKeys[index];
+    }
+
+    /**
+     * Return the value at the given index in the array.
+     * @param index The desired index, must be between 0 and {@link #size()}-1.
+     * @return Returns the value stored at the given index.
+     */
+    @SuppressWarnings("unchecked")
+    public V valueAt(int index) {
+        mergePending();
+        return (V) mValues[index];
+    }
+
+    /**
+     * Set the value at a given index in the array.
+     * @param index The desired index, must be between 0 and {@link #size()}-1.
+     * @param value The new value to store at this index.
+     * @return Returns the previous value at the given index.
+     */
+    @SuppressWarnings("unchecked")
+    public V setValueAt(int index, V value) {
+        mergePending();
+        V old = (V) mValues[index];
+        mValues[index] = value;
+        return old;
+    }
+
+    /**
+     * Return true if the array map contains no items.
+     */
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Add a new value to the array map.
+     * @param key The key under which to store the value. Must not be null.
+     * @param value The value to store for the given key.
+     * @return Returns the old value that was stored for the given key, or null if there
+     * was no such key. Always null while a batch is in progress.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        if (mBatching) {
+            append(key, value);
+            return null;
+        }
+        mergePending();
+        int index = indexOf(key, mSize);
+        if (index >= 0) {
+            V old = (V) mValues[index];
+            mValues[index] = value;
+            return old;
+        }
+        append(key, value);
+        addToIndex();
+        return null;
+    }
+
+    /**
+     * Remove an existing key from the array map.
+     * @param key The key of the mapping to remove.
+     * @return Returns the value that was stored under the key, or null if there
+     * was no such key.
+     */
+    public V remove(Object key) {
+        final int index = indexOfKey(key);
+        if (index >= 0) {
+            return removeAt(index);
+        }
+        return null;
+    }
+
+    /**
+     * Remove the key/value mapping at the given index. The last mapping of the
+     * map takes its index.
+     * @param index The desired index, must be between 0 and {@link #size()}-1.
+     * @return Returns the value that was stored at this index.
+     */
+    @SuppressWarnings("unchecked")
+    public V removeAt(int index) {
+        mergePending();
+        final V old = (V) mValues[index];
+        final int last = mSize - 1;
+        if (mTable != null) {
+            removeSlot(findSlot(index));
+            if (index != last) {
+                mTable[findSlot(last)] = index + 1;
+            }
+        }
+        mKeys[index] = mKeys[last];
+        mValues[index] = mValues[last];
+        mKeys[last] = null;
+        mValues[last] = null;
+        mSize = last;
+        mIndexedSize = last;
+        return old;
+    }
+
+    /**
+     * Return the number of items in this array map.
+     */
+    public int size() {
+        mergePending();
+        return mSize;
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "{}";
+        }
+
+        StringBuilder buffer = new StringBuilder(mSize * 28);
+        buffer.append('{');
+        for (int i = 0; i < mSize; i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            Object key = keyAt(i);
+            if (key != this) {
+                buffer.append(key);
+            } else {
+                buffer.append("(this Map)");
+            }
+            buffer.append('=');
+            Object value = valueAt(i);
+            if (value != this) {
+                buffer.append(value);
+            } else {
+                buffer.append("(this Map)");
+            }
+        }
+        buffer.append('}');
+        return buffer.toString();
+    }
+
+    private void append(Object key, Object value) {
+        if (key == null) {
+            throw new NullPointerException("IdentityArrayMap does not support null keys");
+        }
+        if (mSize >= mKeys.length) {
+            final int n = mSize >= BASE_SIZE ? mSize + (mSize >> 1) : BASE_SIZE;
+            mKeys = Arrays.copyOf(mKeys, n);
+            mValues = Arrays.copyOf(mValues, n);
+        }
+        mKeys[mSize] = key;
+        mValues[mSize] = value;
+        mSize++;
+    }
+
+    /**
+     * Merges the mappings appended by a batch into the indexed ones. Pending
+     * mappings are taken in the order they were put, so the last value put for
+     * a key wins, and the remaining ones are compacted in place, keeping the
+     * insertion order of the first put of each key.
+     */
+    private void mergePending() {
+        if (mIndexedSize == mSize) {
+            return;
+        }
+        final int size = mSize;
+        for (int read = mIndexedSize; read < size; read++) {
+            final Object key = mKeys[read];
+            final Object value = mValues[read];
+            // The mappings before mIndexedSize are the merged ones
+            final int index = indexOf(key, mIndexedSize);
+            if (index >= 0) {
+                mValues[index] = value;
+            } else {
+                final int write = mIndexedSize;
+                mKeys[write] = key;
+                mValues[write] = value;
+                addToIndex();
+            }
+        }
+        Arrays.fill(mKeys, mIndexedSize, size, null);
+        Arrays.fill(mValues, mIndexedSize, size, null);
+        mSize = mIndexedSize;
+    }
+
+    /**
+     * Adds the first pending mapping, at index mIndexedSize, to the index.
+     */
+    private void addToIndex() {
+        final int index = mIndexedSize++;
+        if (mTable == null) {
+            if (mIndexedSize > HASH_THRESHOLD) {
+                rebuildTable();
+            }
+        } else if (mIndexedSize * 2 > mTable.length) {
+            rebuildTable();
+        } else {
+            insertSlot(index);
+        }
+    }
+
+    private void rebuildTable() {
+        int capacity = Integer.highestOneBit(mIndexedSize) << 2;
+        if (mTable == null || mTable.length != capacity) {
+            mTable = new int[capacity];
+        } else {
+            Arrays.fill(mTable, 0);
+        }
+        for (int i = 0; i < mIndexedSize; i++) {
+            insertSlot(i);
+        }
+    }
+
+    private static int hash(Object key) {
+        final int h = System.identityHashCode(key) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the index of the key among the first <var>limit</var> mappings,
+     * which must all be indexed, or -1.
+     */
+    private int indexOf(Object key, int limit) {
+        final Object[] keys = mKeys;
+        if (mTable == null) {
+            for (int i = 0; i < limit; i++) {
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        final int[] table = mTable;
+        final int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            if (keys[entry - 1] == key) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insertSlot(int index) {
+        final int mask = mTable.length - 1;
+        int slot = hash(mKeys[index]) & mask;
+        while (mTable[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        mTable[slot] = index + 1;
+    }
+
+    private int findSlot(int index) {
+        final int mask = mTable.length - 1;
+        int slot = hash(mKeys[index]) & mask;
+        while (mTable[slot] != index + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Frees a slot of the table, moving back the entries of the same probe
+     * sequence so that lookups don't stop early at the freed slot.
+     */
+    private void removeSlot(int slot) {
+        final int[] table = mTable;
+        final int mask = table.length - 1;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            final int entry = table[next];
+            if (entry == 0) {
+                break;
+            }
+            final int home = hash(mKeys[entry - 1]) & mask;
+            // Leave the entry if its home slot is cyclically in (slot, next]
+            if (slot <= next ? (slot < home && home <= next) : (slot < home || home <= next)) {
+                continue;
+            }
+            table[slot] = entry;
+            slot = next;
+        }
+        table[slot] = 0;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition.utils;
+
+import java.util.Arrays;
+
+/**
+ * IntObjectMap maps integers to Objects. Unlike {@link android.util.SparseArray},
+ * which keeps its keys sorted and shifts its arrays on every insertion, it keeps
+ * its mappings in dense arrays in insertion order and finds them through an
+ * open-addressing table of indices, so that insertions and lookups take constant
+ * time whatever the order of the keys.
+ *
+ * <p>Removing a mapping moves the last mapping into its place, so the index of
+ * a mapping may change when another mapping is removed.</p>
+ *
+ * <p>Mappings can be marked by index with {@link #mark(int)}, for instance to
+ * record which ones have been consumed while matching against another map,
+ * without copying the map to remove them from the copy.</p>
+ *
+ * @see LongObjectMap
+ */
+public final class IntObjectMap<V> extends PrimitiveKeyObjectMap<V> {
+    int[] mKeys;
+
+    /**
+     * Creates a new IntObjectMap containing no mappings.
+     */
+    public IntObjectMap() {
+        this(0);
+    }
+
+    /**
+     * Creates a new IntObjectMap containing no mappings that will not
+     * require any additional memory allocation to store the specified
+     * number of mappings.
+     */
+    public IntObjectMap(int initialCapacity) {
+        super(initialCapacity);
+        mKeys = initialCapacity <= 0 ? ContainerHelpers.EMPTY_INTS : new int[initialCapacity];
+    }
+
+    /**
+     * Creates a new IntObjectMap containing the mappings of the given map,
+     * without their marks. The arrays are copied in bulk, without rehashing.
+     */
+    public IntObjectMap(IntObjectMap<V> map) {
+        super(map);
+        mKeys = Arrays.copyOf(map.mKeys, copyCapacity(map));
+    }
+
+    /**
+     * Gets the Object mapped from the specified key, or <code>null</code>
+     * if no such mapping has been made.
+     */
+    public V get(int key) {
+        return get(key, null);
+    }
+
+    /**
+     * Gets the Object mapped from the specified key, or the specified Object
+     * if no such mapping has been made.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key, V valueIfKeyNotFound) {
+        final int index = indexOfKey(key);
+        return index >= 0 ? (V) mValues[index] : valueIfKeyNotFound;
+    }
+
+    /**
+     * Removes the mapping from the specified key, if there was any.
+     */
+    public void remove(int key) {
+        final int index = indexOfKey(key);
+        if (index >= 0) {
+            removeAt(index);
+        }
+    }
+
+    /**
+     * Adds a mapping from the specified key to the specified value,
+     * replacing the previous mapping from the specified key if there
+     * was one.
+     */
+    public void put(int key, V value) {
+        int index = indexOfKey(key);
+        if (index >= 0) {
+            mValues[index] = value;
+            return;
+        }
+        index = nextIndex();
+        mKeys[index] = key;
+        addMapping(index, value);
+    }
+
+    /**
+     * Given an index in the range <code>0...size()-1</code>, returns
+     * the key from the <code>index</code>th key-value mapping that this
+     * IntObjectMap stores, in insertion order as long as no mapping was removed.
+     */
+    public int keyAt(int index) {
+        return mKeys[index];
+    }
+
+    /**
+     * Returns the index for which {@link #keyAt} would return the
+     * specified key, or a negative number if the specified
+     * key is not mapped.
+     */
+    public int indexOfKey(int key) {
+        final int[] table = mTable;
+        final int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            if (mKeys[entry - 1] == key) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int hash(int key) {
+        return mix(key);
+    }
+
+    @Override
+    int hashAt(int index) {
+        return hash(mKeys[index]);
+    }
+
+    @Override
+    void moveKey(int from, int to) {
+        mKeys[to] = mKeys[from];
+    }
+
+    @Override
+    void resizeKeys(int capacity) {
+        mKeys = Arrays.copyOf(mKeys, capacity);
+    }
+
+    @Override
+    void appendKey(StringBuilder buffer, int index) {
+        buffer.append(mKeys[index]);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition.utils;
+
+import android.animation.LayoutTransition;
+import android.view.ViewGroup;
+
+/**
+ * Stands in for <code>ViewGroup.suppressLayout()</code>, which is not public,
+ * on API 14 and later. A ViewGroup skips its layout passes while its
+ * LayoutTransition reports that it is changing the layout, so suppressing the
+ * layout sets a LayoutTransition that always does, and that has no animators.
+ * The LayoutTransition that the group had before is restored afterwards, and
+ * a layout is requested to catch up with the skipped passes.
+ *
+ * <p>Calls are counted per group, in a tag of the group, so that several
+ * transitions can suppress the layout of the same group: it is only resumed
+ * when all of them have stopped suppressing it.</p>
+ */
+public final class LayoutSuppressionCompat {
+    private LayoutSuppressionCompat() {
+    }
+
+    /**
+     * Suppresses the layout passes of the group, until a matching call to
+     * {@link #resumeLayout(android.view.ViewGroup)}.
+     */
+    public static void suppressLayout(ViewGroup group) {
+        SuppressionState state = (SuppressionState) group.getTag(
+                com.guerwan.transitionsbackport.R.id.layout_suppression);
+        if (state == null) {
+            state = new SuppressionState(group.getLayoutTransition(),
+                    createEmptyLayoutTransition());
+            group.setTag(com.guerwan.transitionsbackport.R.id.layout_suppression, state);
+            group.setLayoutTransition(state.emptyLayoutTransition);
+        }
+        state.count++;
+    }
+
+    /**
+     * Stops suppressing the layout passes of the group, once all the calls to
+     * {@link #suppressLayout(android.view.ViewGroup)} have been matched.
+     */
+    public static void resumeLayout(ViewGroup group) {
+        SuppressionState state = (SuppressionState) group.getTag(
+                com.guerwan.transitionsbackport.R.id.layout_suppression);
+        if (state == null || --state.count > 0) {
+            return;
+        }
+        group.setTag(com.guerwan.transitionsbackport.R.id.layout_suppression, null);
+        group.setLayoutTransition(state.layoutTransition);
+        group.requestLayout();
+    }
+
+    /**
+     * Returns whether the layout passes of the group are suppressed.
+     */
+    public static boolean isLayoutSuppressed(ViewGroup group) {
+        return group.getTag(com.guerwan.transitionsbackport.R.id.layout_suppression) != null;
+    }
+
+    /**
+     * Creates the LayoutTransition set while the layout of a group is
+     * suppressed. The group registers a listener with it, so each group gets
+     * its own, which goes away with the group instead of keeping it alive.
+     */
+    private static LayoutTransition createEmptyLayoutTransition() {
+        LayoutTransition emptyLayoutTransition = new LayoutTransition() {
+            @Override
+            public boolean isChangingLayout() {
+                return true;
+            }
+        };
+        emptyLayoutTransition.setAnimator(LayoutTransition.APPEARING, null);
+        emptyLayoutTransition.setAnimator(LayoutTransition.DISAPPEARING, null);
+        emptyLayoutTransition.setAnimator(LayoutTransition.CHANGE_APPEARING, null);
+        emptyLayoutTransition.setAnimator(LayoutTransition.CHANGE_DISAPPEARING, null);
+        emptyLayoutTransition.setAnimator(LayoutTransition.CHANGING, null);
+        return emptyLayoutTransition;
+    }
+
+    private static class SuppressionState {
+        // LayoutTransition of the group before its layout was suppressed
+        final LayoutTransition layoutTransition;
+        // LayoutTransition of the group while its layout is suppressed
+        final LayoutTransition emptyLayoutTransition;
+        int count;
+
+        SuppressionState(LayoutTransition layoutTransition,
+                LayoutTransition emptyLayoutTransition) {
+            this.layoutTransition = layoutTransition;
+            this.emptyLayoutTransition = emptyLayoutTransition;
+        }
+    }
+}
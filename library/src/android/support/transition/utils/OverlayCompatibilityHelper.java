@@ -7,6 +7,8 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.FrameLayout;
 
+import java.util.List;
+
 /**
  * Created by stephane on 11/10/13.
  */
@@ -54,7 +56,7 @@ public class OverlayCompatibilityHelper {
         else
         {
             ViewOverlayCompat viewOverlayCompat = getViewOverlay(sceneRoot);
-            viewOverlayCompat.addDrawable(drawable);
+            viewOverlayCompat.addDrawable(drawable, sceneRoot);
         }
     }
 
@@ -71,60 +73,206 @@ public class OverlayCompatibilityHelper {
         }
     }
 
-    public static void addViewOverlayCompat(View v)
+    /**
+     * Adds a drawable to the overlay of any view, with bounds in the coordinates
+     * of that view. Before API 18, the drawable is drawn by the
+     * {@link ViewOverlayCompat} of the window, at the position of the view.
+     */
+    public static void addDrawableOverlay(View host, Drawable drawable)
+    {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+        {
+            host.getOverlay().add(drawable);
+        }
+        else
+        {
+            ViewOverlayCompat viewOverlayCompat = getViewOverlay(host);
+            if(viewOverlayCompat != null)
+            {
+                viewOverlayCompat.addDrawable(drawable, host);
+            }
+        }
+    }
+
+    /**
+     * Removes a drawable added with {@link #addDrawableOverlay(android.view.View,
+     * android.graphics.drawable.Drawable)}.
+     */
+    public static void removeDrawableOverlay(View host, Drawable drawable)
+    {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+        {
+            host.getOverlay().remove(drawable);
+        }
+        else
+        {
+            ViewOverlayCompat viewOverlayCompat = getViewOverlay(host);
+            if(viewOverlayCompat != null)
+            {
+                viewOverlayCompat.removeDrawable(drawable);
+            }
+        }
+    }
+
+    /**
+     * Sets whether the views added to the overlay of the scene root are drawn
+     * live rather than from snapshots, on versions where the overlay is
+     * emulated by {@link ViewOverlayCompat}.
+     *
+     * @see ViewOverlayCompat#setLiveRendering(boolean)
+     */
+    public static void setLiveOverlayRendering(ViewGroup sceneRoot, boolean liveRendering)
     {
         if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
         {
             return;
         }
 
-        View group = v;
-        while(group != null && !(group.getId() == android.R.id.content))
+        ViewOverlayCompat viewOverlayCompat = getViewOverlay(sceneRoot);
+        if(viewOverlayCompat != null)
         {
-            group = (View) group.getParent();
+            viewOverlayCompat.setLiveRendering(liveRendering);
         }
+    }
 
-        if(group != null)
+    /**
+     * Adds views to the overlay of the scene root, like
+     * {@link #addViewOverlay(android.view.ViewGroup, android.view.View, int, int)},
+     * looking the overlay up only once.
+     *
+     * @param screenLocations The screen x and y of each view, one after the other.
+     */
+    public static void addViewOverlays(ViewGroup sceneRoot, List<View> overlayViews, int[] screenLocations)
+    {
+        int numViews = overlayViews.size();
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
         {
-            ViewOverlayCompat viewOverlayCompat = null;
-            for(int i = 0; i < ((FrameLayout) group).getChildCount(); i++)
+            for(int i = 0; i < numViews; i++)
             {
-                View childAt = ((FrameLayout) group).getChildAt(i);
-                if(childAt instanceof ViewOverlayCompat)
-                {
-                    viewOverlayCompat = (ViewOverlayCompat) childAt;
-                    break;
-                }
+                addViewOverlay(sceneRoot, overlayViews.get(i), screenLocations[2 * i],
+                        screenLocations[2 * i + 1]);
             }
+        }
+        else
+        {
+            ViewOverlayCompat viewOverlayCompat = getViewOverlay(sceneRoot);
+            for(int i = 0; i < numViews; i++)
+            {
+                viewOverlayCompat.addView(overlayViews.get(i), screenLocations[2 * i],
+                        screenLocations[2 * i + 1]);
+            }
+        }
+    }
 
-            if(viewOverlayCompat == null)
+    /**
+     * Removes views from the overlay of the scene root, looking the overlay up
+     * only once.
+     */
+    public static void removeViewOverlays(ViewGroup sceneRoot, List<View> overlayViews)
+    {
+        int numViews = overlayViews.size();
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+        {
+            for(int i = 0; i < numViews; i++)
             {
-                viewOverlayCompat = new ViewOverlayCompat(v.getContext());
-                final FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
-                        ViewGroup.LayoutParams.MATCH_PARENT);
-                params.gravity = Gravity.FILL;
-                ((FrameLayout)group).addView(viewOverlayCompat, params);
+                removeViewOverlay(sceneRoot, overlayViews.get(i));
+            }
+        }
+        else
+        {
+            ViewOverlayCompat viewOverlayCompat = getViewOverlay(sceneRoot);
+            for(int i = 0; i < numViews; i++)
+            {
+                viewOverlayCompat.removeView(overlayViews.get(i));
+            }
+        }
+    }
+
+    /**
+     * Adds drawables to the overlay of the scene root, looking the overlay up
+     * only once.
+     */
+    public static void addDrawableOverlays(ViewGroup sceneRoot, List<Drawable> drawables)
+    {
+        int numDrawables = drawables.size();
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+        {
+            for(int i = 0; i < numDrawables; i++)
+            {
+                sceneRoot.getOverlay().add(drawables.get(i));
+            }
+        }
+        else
+        {
+            ViewOverlayCompat viewOverlayCompat = getViewOverlay(sceneRoot);
+            for(int i = 0; i < numDrawables; i++)
+            {
+                viewOverlayCompat.addDrawable(drawables.get(i), sceneRoot);
+            }
+        }
+    }
+
+    /**
+     * Removes drawables from the overlay of the scene root, looking the overlay
+     * up only once.
+     */
+    public static void removeDrawableOverlays(ViewGroup sceneRoot, List<Drawable> drawables)
+    {
+        int numDrawables = drawables.size();
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+        {
+            for(int i = 0; i < numDrawables; i++)
+            {
+                sceneRoot.getOverlay().remove(drawables.get(i));
+            }
+        }
+        else
+        {
+            ViewOverlayCompat viewOverlayCompat = getViewOverlay(sceneRoot);
+            for(int i = 0; i < numDrawables; i++)
+            {
+                viewOverlayCompat.removeDrawable(drawables.get(i));
             }
         }
     }
 
-    private static ViewOverlayCompat getViewOverlay(ViewGroup sceneRoot) {
+    public static void addViewOverlayCompat(View v)
+    {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+        {
+            return;
+        }
+
+        getViewOverlay(v);
+    }
+
+    /**
+     * Returns the overlay of the window of the given view, adding it to the
+     * content view the first time. The overlay is cached in a tag of the view,
+     * and of the content view, so that it is only searched for once per view.
+     */
+    private static ViewOverlayCompat getViewOverlay(View sceneRoot) {
+        ViewOverlayCompat viewOverlayCompat = getCachedViewOverlay(sceneRoot);
+        if(viewOverlayCompat != null)
+        {
+            return viewOverlayCompat;
+        }
+
         View group = sceneRoot;
         while(group != null && !(group.getId() == android.R.id.content))
         {
-            group = (View) group.getParent();
+            group = group.getParent() instanceof View ? (View) group.getParent() : null;
         }
 
         if(group != null)
         {
-            ViewOverlayCompat viewOverlayCompat = null;
-            for(int i = 0; i < ((FrameLayout) group).getChildCount(); i++)
+            viewOverlayCompat = getCachedViewOverlay(group);
+            for(int i = 0; viewOverlayCompat == null && i < ((FrameLayout) group).getChildCount(); i++)
             {
                 View childAt = ((FrameLayout) group).getChildAt(i);
                 if(childAt instanceof ViewOverlayCompat)
                 {
                     viewOverlayCompat = (ViewOverlayCompat) childAt;
-                    break;
                 }
             }
 
@@ -135,6 +283,23 @@ public class OverlayCompatibilityHelper {
                 params.gravity = Gravity.FILL;
                 ((FrameLayout)group).addView(viewOverlayCompat, params);
             }
+            group.setTag(com.guerwan.transitionsbackport.R.id.view_overlay_compat, viewOverlayCompat);
+            sceneRoot.setTag(com.guerwan.transitionsbackport.R.id.view_overlay_compat, viewOverlayCompat);
+            return viewOverlayCompat;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the overlay cached in a tag of the view, if it is still in the
+     * same window as the view.
+     */
+    private static ViewOverlayCompat getCachedViewOverlay(View view) {
+        ViewOverlayCompat viewOverlayCompat = (ViewOverlayCompat) view.getTag(
+                com.guerwan.transitionsbackport.R.id.view_overlay_compat);
+        if(viewOverlayCompat != null && viewOverlayCompat.getParent() != null &&
+                viewOverlayCompat.getWindowToken() == view.getWindowToken())
+        {
             return viewOverlayCompat;
         }
         return null;
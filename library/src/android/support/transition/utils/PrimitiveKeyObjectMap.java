@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition.utils;
+
+import java.util.Arrays;
+
+/**
+ * Base of {@link IntObjectMap} and {@link LongObjectMap}. It holds the values,
+ * the marks and the open-addressing table of indices shared by both maps, and
+ * implements the probing, removal and marking logic. Subclasses only hold the
+ * keys, of their own primitive type, and look them up.
+ */
+abstract class PrimitiveKeyObjectMap<V> {
+    static final int BASE_SIZE = 4;
+
+    Object[] mValues;
+    boolean[] mMarks;
+    int mSize;
+    // Open-addressing table of (index + 1) into the keys, 0 for a free slot. Its
+    // length is a power of two, at least twice the number of mappings.
+    int[] mTable;
+
+    PrimitiveKeyObjectMap(int initialCapacity) {
+        mValues = initialCapacity <= 0 ? ContainerHelpers.EMPTY_OBJECTS :
+                new Object[initialCapacity];
+        mTable = new int[tableCapacity(initialCapacity)];
+    }
+
+    /**
+     * Copies the values and the table of the given map, without its marks.
+     */
+    PrimitiveKeyObjectMap(PrimitiveKeyObjectMap<V> map) {
+        mValues = Arrays.copyOf(map.mValues, copyCapacity(map));
+        mSize = map.mSize;
+        mTable = map.mTable.clone();
+    }
+
+    /**
+     * Returns the hash of the key at the given index, with its bits spread over
+     * the low bits used to index the table.
+     */
+    abstract int hashAt(int index);
+
+    /**
+     * Moves the key at index <var>from</var> to index <var>to</var>.
+     */
+    abstract void moveKey(int from, int to);
+
+    /**
+     * Resizes the keys array to the given capacity.
+     */
+    abstract void resizeKeys(int capacity);
+
+    /**
+     * Appends the key at the given index to the builder.
+     */
+    abstract void appendKey(StringBuilder buffer, int index);
+
+    /**
+     * Spreads the bits of a key hash over the low bits used to index the table.
+     */
+    static int mix(int key) {
+        final int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static int copyCapacity(PrimitiveKeyObjectMap<?> map) {
+        return Math.max(map.mSize, BASE_SIZE);
+    }
+
+    /**
+     * Grows the arrays if they are full, and returns the index of the next
+     * mapping. Its key must be stored before {@link #addMapping(int, Object)}.
+     */
+    final int nextIndex() {
+        if (mSize >= mValues.length) {
+            final int n = mSize >= BASE_SIZE ? mSize + (mSize >> 1) : BASE_SIZE;
+            resizeKeys(n);
+            mValues = Arrays.copyOf(mValues, n);
+            if (mMarks != null) {
+                mMarks = Arrays.copyOf(mMarks, n);
+            }
+        }
+        return mSize;
+    }
+
+    /**
+     * Adds the mapping at the index returned by {@link #nextIndex()}, whose key
+     * has been stored, to the map.
+     */
+    final void addMapping(int index, V value) {
+        mValues[index] = value;
+        mSize++;
+        if (mSize * 2 > mTable.length) {
+            rebuildTable();
+        } else {
+            insertSlot(index);
+        }
+    }
+
+    /**
+     * Removes the mapping at the specified index. The last mapping of the map
+     * takes its index.
+     */
+    public void removeAt(int index) {
+        final int last = mSize - 1;
+        removeSlot(findSlot(index));
+        if (index != last) {
+            mTable[findSlot(last)] = index + 1;
+            moveKey(last, index);
+            mValues[index] = mValues[last];
+            if (mMarks != null) {
+                mMarks[index] = mMarks[last];
+            }
+        }
+        mValues[last] = null;
+        if (mMarks != null) {
+            mMarks[last] = false;
+        }
+        mSize = last;
+    }
+
+    /**
+     * Returns the number of key-value mappings that this map currently stores.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Given an index in the range <code>0...size()-1</code>, returns
+     * the value from the <code>index</code>th key-value mapping that this
+     * map stores.
+     */
+    @SuppressWarnings("unchecked")
+    public V valueAt(int index) {
+        return (V) mValues[index];
+    }
+
+    /**
+     * Marks the mapping at the given index.
+     */
+    public void mark(int index) {
+        if (mMarks == null) {
+            mMarks = new boolean[mValues.length];
+        }
+        mMarks[index] = true;
+    }
+
+    /**
+     * Returns whether the mapping at the given index is marked.
+     */
+    public boolean isMarkedAt(int index) {
+        return mMarks != null && mMarks[index];
+    }
+
+    /**
+     * Unmarks all mappings.
+     */
+    public void clearMarks() {
+        if (mMarks != null) {
+            Arrays.fill(mMarks, false);
+        }
+    }
+
+    /**
+     * Removes all key-value mappings and marks from this map.
+     */
+    public void clear() {
+        Arrays.fill(mValues, 0, mSize, null);
+        Arrays.fill(mTable, 0);
+        clearMarks();
+        mSize = 0;
+    }
+
+    static int tableCapacity(int size) {
+        return Math.max(Integer.highestOneBit(Math.max(size, 1)) << 2, 8);
+    }
+
+    private void rebuildTable() {
+        mTable = new int[tableCapacity(mSize)];
+        for (int i = 0; i < mSize; i++) {
+            insertSlot(i);
+        }
+    }
+
+    private void insertSlot(int index) {
+        final int mask = mTable.length - 1;
+        int slot = hashAt(index) & mask;
+        while (mTable[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        mTable[slot] = index + 1;
+    }
+
+    private int findSlot(int index) {
+        final int mask = mTable.length - 1;
+        int slot = hashAt(index) & mask;
+        while (mTable[slot] != index + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Frees a slot of the table, moving back the entries of the same probe
+     * sequence so that lookups don't stop early at the freed slot.
+     */
+    private void removeSlot(int slot) {
+        final int[] table = mTable;
+        final int mask = table.length - 1;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            final int entry = table[next];
+            if (entry == 0) {
+                break;
+            }
+            final int home = hashAt(entry - 1) & mask;
+            // Leave the entry if its home slot is cyclically in (slot, next]
+            if (slot <= next ? (slot < home && home <= next) : (slot < home || home <= next)) {
+                continue;
+            }
+            table[slot] = entry;
+            slot = next;
+        }
+        table[slot] = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation composes a string by iterating over its mappings.
+     */
+    @Override
+    public String toString() {
+        if (size() <= 0) {
+            return "{}";
+        }
+
+        StringBuilder buffer = new StringBuilder(mSize * 28);
+        buffer.append('{');
+        for (int i = 0; i < mSize; i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            appendKey(buffer, i);
+            buffer.append('=');
+            Object value = valueAt(i);
+            if (value != this) {
+                buffer.append(value);
+            } else {
+                buffer.append("(this Map)");
+            }
+        }
+        buffer.append('}');
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns a small integer key to each transition property name, such as
+ * "android:changeBounds:bounds", the first time it is registered. Transitions
+ * register their property names once, typically in static fields, and then
+ * read and write {@link PropertyMap} values with the integer keys, which
+ * avoids hashing and comparing the names on every access.
+ *
+ * <p>Keys are never unregistered, and are only valid within the process. The
+ * null name, which maps such as {@link ArrayMap} accept as a key, always has
+ * the key {@link #NULL_KEY}.</p>
+ */
+public final class PropertyKeyRegistry {
+    /**
+     * The key of the null property name.
+     */
+    public static final int NULL_KEY = 0;
+
+    private static final ConcurrentHashMap<String, Integer> sKeys =
+            new ConcurrentHashMap<String, Integer>();
+    private static final Object sLock = new Object();
+    // Names by key, replaced when it grows so that readers need no locking
+    private static volatile String[] sNames = new String[32];
+    // Key 0 is reserved for the null name, which sKeys cannot hold
+    private static int sCount = NULL_KEY + 1;
+
+    private PropertyKeyRegistry() {
+    }
+
+    /**
+     * Returns the key of the given property name, assigning it a new key if
+     * the name was not registered yet.
+     *
+     * @param name The property name, may be null.
+     * @return The key of the property name.
+     */
+    public static int register(String name) {
+        if (name == null) {
+            return NULL_KEY;
+        }
+        Integer key = sKeys.get(name);
+        if (key != null) {
+            return key;
+        }
+        synchronized (sLock) {
+            key = sKeys.get(name);
+            if (key == null) {
+                String[] names = sNames;
+                if (sCount == names.length) {
+                    names = Arrays.copyOf(names, sCount * 2);
+                }
+                names[sCount] = name;
+                sNames = names;
+                key = sCount++;
+                sKeys.put(name, key);
+            }
+            return key;
+        }
+    }
+
+    /**
+     * Returns the key of the given property name, or -1 if it was never registered.
+     *
+     * @param name The property name, may be null.
+     * @return The key of the property name, or -1.
+     */
+    public static int getKey(String name) {
+        if (name == null) {
+            return NULL_KEY;
+        }
+        Integer key = sKeys.get(name);
+        return key != null ? key : -1;
+    }
+
+    /**
+     * Returns the property name registered for the given key.
+     *
+     * @param key A key returned by {@link #register(String)}.
+     * @return The property name of the key.
+     */
+    public static String getName(int key) {
+        return sNames[key];
+    }
+}
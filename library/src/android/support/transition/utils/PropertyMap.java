@@ -0,0 +1,428 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition.utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * PropertyMap holds the values captured by transitions, keyed by the integer
+ * keys of their property names (see {@link PropertyKeyRegistry}). A view only
+ * has a handful of captured properties, so the keys are kept in a small int
+ * array, in insertion order, and searched linearly, with no hashing nor string
+ * comparison.
+ *
+ * <p>PropertyMap also implements <code>Map&lt;String, Object&gt;</code>, so that
+ * values can still be accessed by property name. These accesses look up the key
+ * of the name in the registry first, and are slower than the integer ones.
+ * Like {@link ArrayMap}, it accepts the null name as a key.</p>
+ */
+public final class PropertyMap implements Map<String, Object> {
+    private static final int BASE_SIZE = 4;
+
+    int[] mKeys;
+    Object[] mValues;
+    int mSize;
+    MapCollections<String, Object> mCollections;
+
+    /**
+     * Create a new empty PropertyMap.
+     */
+    public PropertyMap() {
+        mKeys = ContainerHelpers.EMPTY_INTS;
+        mValues = ContainerHelpers.EMPTY_OBJECTS;
+    }
+
+    /**
+     * Returns the index of a property key in the map.
+     *
+     * @param key The property key to search for.
+     * @return Returns the index of the key if it exists, else a negative integer.
+     */
+    public int indexOfKey(int key) {
+        final int[] keys = mKeys;
+        for (int i = mSize - 1; i >= 0; i--) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Check whether a property key exists in the map.
+     */
+    public boolean containsKey(int key) {
+        return indexOfKey(key) >= 0;
+    }
+
+    /**
+     * Retrieve the value of a property.
+     * @param key The property key of the value to retrieve.
+     * @return Returns the value associated with the given key,
+     * or null if there is no such key.
+     */
+    public Object get(int key) {
+        final int index = indexOfKey(key);
+        return index >= 0 ? mValues[index] : null;
+    }
+
+    /**
+     * Set the value of a property.
+     * @param key The property key under which to store the value.
+     * @param value The value to store for the given key.
+     * @return Returns the old value that was stored for the given key, or null if there
+     * was no such key.
+     */
+    public Object put(int key, Object value) {
+        final int index = indexOfKey(key);
+        if (index >= 0) {
+            final Object old = mValues[index];
+            mValues[index] = value;
+            return old;
+        }
+        if (mSize >= mKeys.length) {
+            final int n = mSize >= BASE_SIZE ? mSize * 2 : BASE_SIZE;
+            mKeys = Arrays.copyOf(mKeys, n);
+            mValues = Arrays.copyOf(mValues, n);
+        }
+        mKeys[mSize] = key;
+        mValues[mSize] = value;
+        mSize++;
+        return null;
+    }
+
+    /**
+     * Remove a property from the map.
+     * @param key The property key of the mapping to remove.
+     * @return Returns the value that was stored under the key, or null if there
+     * was no such key.
+     */
+    public Object remove(int key) {
+        final int index = indexOfKey(key);
+        return index >= 0 ? removeAt(index) : null;
+    }
+
+    /**
+     * Return the property name at the given index in the map.
+     * @param index The desired index, must be between 0 and {@link #size()}-1.
+     */
+    public String keyAt(int index) {
+        return PropertyKeyRegistry.getName(mKeys[index]);
+    }
+
+    /**
+     * Return the property key at the given index in the map.
+     * @param index The desired index, must be between 0 and {@link #size()}-1.
+     */
+    public int propertyKeyAt(int index) {
+        return mKeys[index];
+    }
+
+    /**
+     * Return the value at the given index in the map.
+     * @param index The desired index, must be between 0 and {@link #size()}-1.
+     */
+    public Object valueAt(int index) {
+        return mValues[index];
+    }
+
+    /**
+     * Set the value at a given index in the map.
+     * @param index The desired index, must be between 0 and {@link #size()}-1.
+     * @param value The new value to store at this index.
+     * @return Returns the previous value at the given index.
+     */
+    public Object setValueAt(int index, Object value) {
+        final Object old = mValues[index];
+        mValues[index] = value;
+        return old;
+    }
+
+    /**
+     * Remove the mapping at the given index.
+     * @param index The desired index, must be between 0 and {@link #size()}-1.
+     * @return Returns the value that was stored at this index.
+     */
+    public Object removeAt(int index) {
+        final Object old = mValues[index];
+        final int moved = mSize - index - 1;
+        if (moved > 0) {
+            System.arraycopy(mKeys, index + 1, mKeys, index, moved);
+            System.arraycopy(mValues, index + 1, mValues, index, moved);
+        }
+        mSize--;
+        mValues[mSize] = null;
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(mValues, 0, mSize, null);
+        mSize = 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOfName(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return indexOfValue(value) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        final int index = indexOfName(key);
+        return index >= 0 ? mValues[index] : null;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return put(PropertyKeyRegistry.register(key), value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        final int index = indexOfName(key);
+        return index >= 0 ? removeAt(index) : null;
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> map) {
+        if (map instanceof PropertyMap) {
+            final PropertyMap propertyMap = (PropertyMap) map;
+            for (int i = 0; i < propertyMap.mSize; i++) {
+                put(propertyMap.mKeys[i], propertyMap.mValues[i]);
+            }
+            return;
+        }
+        for (Entry<? extends String, ?> entry : map.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private int indexOfName(Object name) {
+        if (name != null && !(name instanceof String)) {
+            return -1;
+        }
+        final int key = PropertyKeyRegistry.getKey((String) name);
+        return key >= 0 ? indexOfKey(key) : -1;
+    }
+
+    private int indexOfValue(Object value) {
+        for (int i = 0; i < mSize; i++) {
+            if (value == null ? mValues[i] == null : value.equals(mValues[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns false if the object is not a map, or
+     * if the maps have different sizes. Otherwise, for each key in this map,
+     * values of both maps are compared. If the values for any key are not
+     * equal, the method returns false, otherwise it returns true.
+     */
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (object instanceof PropertyMap) {
+            final PropertyMap map = (PropertyMap) object;
+            if (mSize != map.mSize) {
+                return false;
+            }
+            for (int i = 0; i < mSize; i++) {
+                final int index = map.indexOfKey(mKeys[i]);
+                if (index < 0 || !Objects.equal(mValues[i], map.mValues[index])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (object instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) object;
+            if (mSize != map.size()) {
+                return false;
+            }
+            for (int i = 0; i < mSize; i++) {
+                final String key = keyAt(i);
+                final Object mine = mValues[i];
+                final Object theirs = map.get(key);
+                if (mine == null) {
+                    if (theirs != null || !map.containsKey(key)) {
+                        return false;
+                    }
+                } else if (!mine.equals(theirs)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 0;
+        for (int i = 0; i < mSize; i++) {
+            final Object value = mValues[i];
+            final String key = keyAt(i);
+            result += (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation composes a string by iterating over its mappings.
+     */
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "{}";
+        }
+
+        StringBuilder buffer = new StringBuilder(mSize * 28);
+        buffer.append('{');
+        for (int i = 0; i < mSize; i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            buffer.append(keyAt(i));
+            buffer.append('=');
+            Object value = valueAt(i);
+            if (value != this) {
+                buffer.append(value);
+            } else {
+                buffer.append("(this Map)");
+            }
+        }
+        buffer.append('}');
+        return buffer.toString();
+    }
+
+    private MapCollections<String, Object> getCollection() {
+        if (mCollections == null) {
+            mCollections = new MapCollections<String, Object>() {
+                @Override
+                protected int colGetSize() {
+                    return mSize;
+                }
+
+                @Override
+                protected Object colGetEntry(int index, int offset) {
+                    return offset == 0 ? keyAt(index) : valueAt(index);
+                }
+
+                @Override
+                protected int colIndexOfKey(Object key) {
+                    return indexOfName(key);
+                }
+
+                @Override
+                protected int colIndexOfValue(Object value) {
+                    return indexOfValue(value);
+                }
+
+                @Override
+                protected Map<String, Object> colGetMap() {
+                    return PropertyMap.this;
+                }
+
+                @Override
+                protected void colPut(String key, Object value) {
+                    put(key, value);
+                }
+
+                @Override
+                protected Object colSetValue(int index, Object value) {
+                    return setValueAt(index, value);
+                }
+
+                @Override
+                protected void colRemoveAt(int index) {
+                    removeAt(index);
+                }
+
+                @Override
+                protected void colClear() {
+                    clear();
+                }
+            };
+        }
+        return mCollections;
+    }
+
+    /**
+     * Return a {@link java.util.Set} for iterating over and interacting with all
+     * mappings in the map.
+     *
+     * <p><b>Note:</b> this is a fairly inefficient way to access the map contents,
+     * it requires generating a number of temporary objects. Prefer the indexed
+     * accessors.</p>
+     */
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return getCollection().getEntrySet();
+    }
+
+    /**
+     * Return a {@link java.util.Set} for iterating over and interacting with all
+     * property names in the map.
+     *
+     * <p><b>Note:</b> this is a fairly inefficient way to access the map contents,
+     * it requires generating a number of temporary objects. Prefer the indexed
+     * accessors.</p>
+     */
+    @Override
+    public Set<String> keySet() {
+        return getCollection().getKeySet();
+    }
+
+    /**
+     * Return a {@link java.util.Collection} for iterating over and interacting with
+     * all values in the map.
+     *
+     * <p><b>Note:</b> this is a fairly inefficient way to access the map contents,
+     * it requires generating a number of temporary objects. Prefer the indexed
+     * accessors.</p>
+     */
+    @Override
+    public Collection<Object> values() {
+        return getCollection().getValues();
+    }
+}
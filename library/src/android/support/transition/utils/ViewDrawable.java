@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition.utils;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+/**
+ * A drawable that draws a view live, with {@link View#draw(android.graphics.Canvas)},
+ * scaled to the bounds of the drawable. Unlike a snapshot, it needs no bitmap and
+ * shows the current content of the view. The view is drawn even when it is
+ * invisible, so that it can be hidden from its parent while the drawable stands
+ * in for it, typically in an overlay.
+ */
+public class ViewDrawable extends Drawable {
+    private final View mView;
+    private int mAlpha = 255;
+
+    public ViewDrawable(View view) {
+        mView = view;
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        int width = mView.getWidth();
+        int height = mView.getHeight();
+        Rect bounds = getBounds();
+        if (width <= 0 || height <= 0 || bounds.isEmpty() || mAlpha == 0) {
+            return;
+        }
+        int saveCount = canvas.save();
+        canvas.translate(bounds.left, bounds.top);
+        if (bounds.width() != width || bounds.height() != height) {
+            canvas.scale((float) bounds.width() / width, (float) bounds.height() / height);
+        }
+        if (mAlpha < 255) {
+            canvas.saveLayerAlpha(0, 0, width, height, mAlpha, Canvas.ALL_SAVE_FLAG);
+        }
+        mView.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        if (alpha != mAlpha) {
+            mAlpha = alpha;
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mView.getWidth();
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mView.getHeight();
+    }
+}
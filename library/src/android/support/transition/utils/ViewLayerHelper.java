@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition.utils;
+
+import android.os.Build;
+import android.support.v4.view.ViewCompat;
+import android.util.DisplayMetrics;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Puts views on a hardware layer for the duration of their animations. Several
+ * animators may hold the layer of the same view at once: the layer type that the
+ * view had before the first of them is stored in a tag of the view, and restored
+ * when the last one releases the layer.
+ */
+public final class ViewLayerHelper {
+
+    private ViewLayerHelper() {
+    }
+
+    /**
+     * Returns whether a hardware layer is likely to make the animation of the view
+     * cheaper: the view must be hardware accelerated, not larger than the display,
+     * and draw overlapping children, which would otherwise all be redrawn on every
+     * frame.
+     */
+    public static boolean isLayerWorthwhile(View view) {
+        if (!isLayerPossible(view)) {
+            return false;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN &&
+                !view.hasOverlappingRendering()) {
+            return false;
+        }
+        if (!(view instanceof ViewGroup) || ((ViewGroup) view).getChildCount() == 0) {
+            return false;
+        }
+        DisplayMetrics metrics = view.getResources().getDisplayMetrics();
+        return (long) view.getWidth() * view.getHeight() <=
+                (long) metrics.widthPixels * metrics.heightPixels;
+    }
+
+    /**
+     * Returns whether the view can be put on a hardware layer at all. Views that
+     * are not hardware accelerated would get a software layer instead, which is
+     * redrawn whenever the view is.
+     */
+    public static boolean isLayerPossible(View view) {
+        return view.isHardwareAccelerated() && view.getWidth() > 0 && view.getHeight() > 0;
+    }
+
+    /**
+     * Puts the view on a hardware layer, unless it is already on one. Each call
+     * must be balanced by a call to {@link #releaseLayer(android.view.View)}.
+     */
+    public static void acquireLayer(View view) {
+        LayerState state = (LayerState) view.getTag(
+                com.guerwan.transitionsbackport.R.id.transition_layer);
+        if (state == null) {
+            state = new LayerState(ViewCompat.getLayerType(view));
+            view.setTag(com.guerwan.transitionsbackport.R.id.transition_layer, state);
+            if (state.layerType != ViewCompat.LAYER_TYPE_HARDWARE) {
+                ViewCompat.setLayerType(view, ViewCompat.LAYER_TYPE_HARDWARE, null);
+            }
+        }
+        state.count++;
+    }
+
+    /**
+     * Releases a layer acquired with {@link #acquireLayer(android.view.View)}. The
+     * original layer type of the view is restored once all of them are released.
+     */
+    public static void releaseLayer(View view) {
+        LayerState state = (LayerState) view.getTag(
+                com.guerwan.transitionsbackport.R.id.transition_layer);
+        if (state == null) {
+            return;
+        }
+        if (--state.count == 0) {
+            view.setTag(com.guerwan.transitionsbackport.R.id.transition_layer, null);
+            if (ViewCompat.getLayerType(view) == ViewCompat.LAYER_TYPE_HARDWARE &&
+                    state.layerType != ViewCompat.LAYER_TYPE_HARDWARE) {
+                ViewCompat.setLayerType(view, state.layerType, null);
+            }
+        }
+    }
+
+    private static class LayerState {
+        final int layerType;
+        int count;
+
+        LayerState(int layerType) {
+            this.layerType = layerType;
+        }
+    }
+}
@@ -4,16 +4,23 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
+import android.os.Looper;
 import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
+import android.view.SurfaceView;
+import android.view.TextureView;
 import android.view.View;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Created by stephane on 11/10/13.
+ *
+ * <p>Like any view, the overlay must only be used from the main thread, which
+ * its methods check. Its views and drawables are kept in {@link OverlayEntries},
+ * which find them by identity and draw them in the order they were added.</p>
  */
 public class ViewOverlayCompat extends View {
     public ViewOverlayCompat(Context context) {
@@ -32,46 +39,201 @@ public class ViewOverlayCompat extends View {
     }
 
     private Paint mPaint;
+    private boolean mLiveRendering;
+    private final Rect mTmpRect = new Rect();
+    // Whether mFrameCallback is posted for the next animation frame
+    private boolean mFrameCallbackPosted;
+
+    /**
+     * Runs on every animation frame while the overlay is not empty. The alpha of
+     * the overlaid views and the bounds of the drawables are changed by animators
+     * that do not tell the overlay, so they are checked here, and only the areas
+     * that changed are invalidated. Once the overlay is empty, it stops, and the
+     * overlay goes idle.
+     */
+    private final Runnable mFrameCallback = new Runnable() {
+        @Override
+        public void run() {
+            mFrameCallbackPosted = false;
+            for (int i = 0; i < viewOverlays.end; i++) {
+                ViewWithBounds viewWithBounds = (ViewWithBounds) viewOverlays.entries[i];
+                if (viewWithBounds != null && (viewWithBounds.view.getAlpha() != viewWithBounds.drawnAlpha ||
+                        (viewWithBounds.bitmap == null && viewWithBounds.view.isDirty()))) {
+                    viewWithBounds.getDirtyBounds(mTmpRect);
+                    invalidate(mTmpRect);
+                }
+            }
+            for (int i = 0; i < drawableOverlays.end; i++) {
+                DrawableWithBounds drawableWithBounds =
+                        (DrawableWithBounds) drawableOverlays.entries[i];
+                if (drawableWithBounds != null && !drawableWithBounds.drawnBounds.equals(
+                        drawableWithBounds.drawable.getBounds())) {
+                    drawableWithBounds.getDirtyBounds(mTmpRect);
+                    invalidate(mTmpRect);
+                }
+            }
+            scheduleFrameCallback();
+        }
+    };
+
     private void init() {
         mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        viewOverlays = new ArrayList<ViewWithBounds>();
-        drawableOverlays = new ArrayList<Drawable>();
+        viewOverlays = new OverlayEntries();
+        drawableOverlays = new OverlayEntries();
+    }
+
+    private static void checkThread() {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            throw new IllegalStateException(
+                    "ViewOverlayCompat can only be used from the main thread");
+        }
+    }
+
+    private void scheduleFrameCallback() {
+        if (!mFrameCallbackPosted && getWindowToken() != null &&
+                (viewOverlays.count > 0 || drawableOverlays.count > 0)) {
+            mFrameCallbackPosted = true;
+            ViewCompat.postOnAnimation(this, mFrameCallback);
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        scheduleFrameCallback();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        removeCallbacks(mFrameCallback);
+        mFrameCallbackPosted = false;
     }
 
-    private List<ViewWithBounds> viewOverlays;
+    /**
+     * Sets whether the views added to this overlay are drawn live, with
+     * {@link View#draw(android.graphics.Canvas)}, rather than from a snapshot
+     * taken when they are added. Live views keep their animated content and
+     * need no bitmap, but their content is drawn again on every frame where
+     * their alpha changes. Views that cannot be drawn outside of their window,
+     * such as {@link TextureView} and {@link SurfaceView}, are always
+     * snapshotted. This only applies to the views added afterwards.
+     */
+    public void setLiveRendering(boolean liveRendering)
+    {
+        mLiveRendering = liveRendering;
+    }
+
+    /**
+     * Returns whether the views added to this overlay are drawn live.
+     *
+     * @see #setLiveRendering(boolean)
+     */
+    public boolean isLiveRendering()
+    {
+        return mLiveRendering;
+    }
+
+    private OverlayEntries viewOverlays;
     public void addView(View view, int left, int top)
     {
-        this.viewOverlays.add(new ViewWithBounds(view, left, top));
-        invalidate();
+        checkThread();
+        // A view added again replaces its previous snapshot
+        removeView(view);
+        ViewWithBounds viewWithBounds = new ViewWithBounds(view, left, top,
+                mLiveRendering && !(view instanceof TextureView) && !(view instanceof SurfaceView));
+        this.viewOverlays.add(view, viewWithBounds);
+        viewWithBounds.getDirtyBounds(mTmpRect);
+        invalidate(mTmpRect);
+        scheduleFrameCallback();
     }
 
-    public synchronized void removeView(View v)
+    public void removeView(View v)
     {
-        int i = -1;
-        for(ViewWithBounds viewWithBounds : viewOverlays)
-        {
-            i++;
-            if(viewWithBounds.getView().equals(v))
-                break;
-        }
-        if(i > -1 && i < viewOverlays.size())
+        checkThread();
+        ViewWithBounds viewWithBounds = (ViewWithBounds) viewOverlays.remove(v);
+        if(viewWithBounds != null)
         {
-            viewOverlays.remove(i);
-            invalidate();
+            BitmapPool.getInstance().release(viewWithBounds.getBitmap());
+            viewWithBounds.getDirtyBounds(mTmpRect);
+            invalidate(mTmpRect);
         }
     }
 
-    private List<Drawable> drawableOverlays;
+    private OverlayEntries drawableOverlays;
     public void addDrawable(Drawable drawable)
     {
-        this.drawableOverlays.add(drawable);
-        invalidate();
+        addDrawable(drawable, null);
     }
 
-    public synchronized void removeDrawable(Drawable drawable)
+    /**
+     * Adds a drawable whose bounds are in the coordinates of the given host view,
+     * the way they would be in the platform overlay of that view. The offset from
+     * the host to the overlay is computed once, when the drawable is added.
+     *
+     * @param host The view whose coordinates the drawable bounds are in, or null
+     * if they are in the coordinates of the overlay.
+     */
+    public void addDrawable(Drawable drawable, View host)
     {
-        drawableOverlays.remove(drawable);
-        invalidate();
+        checkThread();
+        if(drawableOverlays.get(drawable) != null)
+        {
+            return;
+        }
+        DrawableWithBounds drawableWithBounds = new DrawableWithBounds(drawable);
+        if(host != null && host != this)
+        {
+            int[] location = new int[2];
+            host.getLocationInWindow(location);
+            drawableWithBounds.offsetX = location[0];
+            drawableWithBounds.offsetY = location[1];
+            getLocationInWindow(location);
+            drawableWithBounds.offsetX -= location[0];
+            drawableWithBounds.offsetY -= location[1];
+        }
+        this.drawableOverlays.add(drawable, drawableWithBounds);
+        // Changes of the drawable that call invalidateSelf() invalidate its bounds,
+        // the callback it had, usually the view it belongs to, is given back on removal
+        drawableWithBounds.previousCallback = drawable.getCallback();
+        drawable.setCallback(this);
+        drawableWithBounds.getDirtyBounds(mTmpRect);
+        invalidate(mTmpRect);
+        scheduleFrameCallback();
+    }
+
+    public void removeDrawable(Drawable drawable)
+    {
+        checkThread();
+        DrawableWithBounds drawableWithBounds =
+                (DrawableWithBounds) drawableOverlays.remove(drawable);
+        if(drawableWithBounds != null)
+        {
+            if (drawable.getCallback() == this) {
+                drawable.setCallback(drawableWithBounds.previousCallback);
+            }
+            drawableWithBounds.getDirtyBounds(mTmpRect);
+            invalidate(mTmpRect);
+        }
+    }
+
+    @Override
+    protected boolean verifyDrawable(Drawable who) {
+        return super.verifyDrawable(who) || drawableOverlays.get(who) != null;
+    }
+
+    @Override
+    public void invalidateDrawable(Drawable drawable) {
+        DrawableWithBounds drawableWithBounds = (DrawableWithBounds) drawableOverlays.get(drawable);
+        if (drawableWithBounds != null) {
+            Rect bounds = drawable.getBounds();
+            invalidate(bounds.left + drawableWithBounds.offsetX,
+                    bounds.top + drawableWithBounds.offsetY,
+                    bounds.right + drawableWithBounds.offsetX,
+                    bounds.bottom + drawableWithBounds.offsetY);
+        } else {
+            super.invalidateDrawable(drawable);
+        }
     }
 
     @Override
@@ -79,42 +241,188 @@ public class ViewOverlayCompat extends View {
         int parentLeft = ((View) getParent()).getLeft();
         int top = ((View) getParent()).getTop();
 
-        for(ViewWithBounds viewWithBounds : viewOverlays)
+        for(int i = 0; i < viewOverlays.end; i++)
         {
+            ViewWithBounds viewWithBounds = (ViewWithBounds) viewOverlays.entries[i];
+            if(viewWithBounds == null)
+            {
+                continue;
+            }
             Bitmap bitmap = viewWithBounds.getBitmap();
-            if(bitmap != null) {
+            if(viewWithBounds.live) {
+                View view = viewWithBounds.view;
+                float alpha = view.getAlpha();
+                if(alpha > 0) {
+                    int saveCount = canvas.save();
+                    canvas.translate(viewWithBounds.left - parentLeft, viewWithBounds.top - top);
+                    if(alpha < 1) {
+                        canvas.saveLayerAlpha(0, 0, view.getWidth(), view.getHeight(),
+                                (int) (alpha * 255), Canvas.ALL_SAVE_FLAG);
+                    }
+                    view.draw(canvas);
+                    canvas.restoreToCount(saveCount);
+                }
+                viewWithBounds.drawnAlpha = alpha;
+            } else if(bitmap != null) {
                 float alpha1 = viewWithBounds.view.getAlpha();
                 int alpha = (int) (alpha1 * 255);
                 mPaint.setAlpha(alpha);
                 canvas.drawBitmap(bitmap, viewWithBounds.left - parentLeft, viewWithBounds.top - top, mPaint);
+                viewWithBounds.drawnAlpha = alpha1;
             }
         }
 
-        for(Drawable drawable : drawableOverlays)
+        // Drawables of the same host are drawn under the same translation
+        int offsetX = 0;
+        int offsetY = 0;
+        for(int i = 0; i < drawableOverlays.end; i++)
         {
-            drawable.draw(canvas);
+            DrawableWithBounds drawableWithBounds =
+                    (DrawableWithBounds) drawableOverlays.entries[i];
+            if(drawableWithBounds == null)
+            {
+                continue;
+            }
+            if(drawableWithBounds.offsetX != offsetX || drawableWithBounds.offsetY != offsetY)
+            {
+                canvas.translate(drawableWithBounds.offsetX - offsetX,
+                        drawableWithBounds.offsetY - offsetY);
+                offsetX = drawableWithBounds.offsetX;
+                offsetY = drawableWithBounds.offsetY;
+            }
+            drawableWithBounds.drawable.draw(canvas);
+            drawableWithBounds.drawnBounds.set(drawableWithBounds.drawable.getBounds());
         }
+        canvas.translate(-offsetX, -offsetY);
+    }
+
+    /**
+     * The views or drawables of the overlay, in the order they were added. An
+     * entry is found from its view or drawable by identity, and removed in
+     * constant time by clearing its slot; the slots are compacted once half of
+     * them are empty.
+     */
+    private static class OverlayEntries {
+        OverlayEntry[] entries = new OverlayEntry[4];
+        // Number of slots used, including cleared ones
+        int end;
+        // Number of entries
+        int count;
+        private final IdentityArrayMap<Object, OverlayEntry> mEntriesByKey =
+                new IdentityArrayMap<Object, OverlayEntry>();
 
+        OverlayEntry get(Object key) {
+            return mEntriesByKey.get(key);
+        }
 
-        ViewCompat.postInvalidateOnAnimation(this);
+        void add(Object key, OverlayEntry entry) {
+            if (end == entries.length) {
+                if (count < end) {
+                    compact();
+                } else {
+                    entries = Arrays.copyOf(entries, end * 2);
+                }
+            }
+            entry.index = end;
+            entries[end++] = entry;
+            count++;
+            mEntriesByKey.put(key, entry);
+        }
 
+        OverlayEntry remove(Object key) {
+            OverlayEntry entry = mEntriesByKey.remove(key);
+            if (entry != null) {
+                entries[entry.index] = null;
+                count--;
+                if (count * 2 < end) {
+                    compact();
+                }
+            }
+            return entry;
+        }
+
+        private void compact() {
+            int j = 0;
+            for (int i = 0; i < end; i++) {
+                OverlayEntry entry = entries[i];
+                if (entry != null) {
+                    entry.index = j;
+                    entries[j++] = entry;
+                }
+            }
+            Arrays.fill(entries, j, end, null);
+            end = j;
+        }
+    }
+
+    private static class OverlayEntry {
+        // Slot of the entry in OverlayEntries.entries
+        int index;
+    }
+
+    private static class DrawableWithBounds extends OverlayEntry {
+        final Drawable drawable;
+        // Bounds of the drawable when it was last drawn
+        final Rect drawnBounds;
+        // Offset from the coordinates of the drawable bounds to the overlay
+        int offsetX;
+        int offsetY;
+        // Callback of the drawable before it was added to the overlay
+        Drawable.Callback previousCallback;
+
+        DrawableWithBounds(Drawable drawable) {
+            this.drawable = drawable;
+            this.drawnBounds = new Rect(drawable.getBounds());
+        }
+
+        /**
+         * Returns the area of the overlay covered by the drawable when it was
+         * last drawn and now.
+         */
+        void getDirtyBounds(Rect outRect) {
+            outRect.set(drawnBounds);
+            outRect.union(drawable.getBounds());
+            outRect.offset(offsetX, offsetY);
+        }
     }
 
-    private class ViewWithBounds {
+    private class ViewWithBounds extends OverlayEntry {
         private View view;
         private Bitmap bitmap;
+        // Whether the view is drawn directly instead of its snapshot
+        final boolean live;
         public int left;
         public int top;
+        // Alpha of the view when it or its snapshot was last drawn
+        float drawnAlpha;
 
-        private ViewWithBounds(View view, int left, int top) {
+        private ViewWithBounds(View view, int left, int top, boolean live) {
             this.view = view;
-            Bitmap bitmap = Bitmap.createBitmap(view.getWidth(), view.getHeight(),
-                    Bitmap.Config.ARGB_8888);
-            Canvas canvas = new Canvas(bitmap);
-            view.draw(canvas);
-            this.bitmap = bitmap;
+            this.live = live;
+            if (!live && view.getWidth() > 0 && view.getHeight() > 0) {
+                Bitmap bitmap = BitmapPool.getInstance().acquire(view.getWidth(),
+                        view.getHeight(), Bitmap.Config.ARGB_8888);
+                if (view instanceof TextureView) {
+                    ((TextureView) view).getBitmap(bitmap);
+                } else {
+                    view.draw(new Canvas(bitmap));
+                }
+                this.bitmap = bitmap;
+            }
             this.left = left;
             this.top = top;
+            this.drawnAlpha = view.getAlpha();
+        }
+
+        /**
+         * Returns the area of the overlay where the view or its snapshot is drawn.
+         */
+        void getDirtyBounds(Rect outRect)
+        {
+            View parent = (View) getParent();
+            int x = parent != null ? left - parent.getLeft() : left;
+            int y = parent != null ? top - parent.getTop() : top;
+            outRect.set(x, y, x + view.getWidth(), y + view.getHeight());
         }
 
         public Bitmap getBitmap()
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.view.View;
+import android.widget.FrameLayout;
+
+/**
+ * Checks that a child added to a set after its start values were captured
+ * keeps the values the earlier children captured under the same names, even
+ * if the views changed in between.
+ */
+public class AddTransitionAfterCaptureTest extends InstrumentationTestCase {
+    private static final String PROPNAME_VISIBILITY = "android:visibility:visibility";
+    private static final String PROPNAME_LATE = "android:test:late";
+
+    private FrameLayout mSceneRoot;
+    private View mView;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Context context = getInstrumentation().getTargetContext();
+        mSceneRoot = new FrameLayout(context);
+        mView = new View(context);
+        mSceneRoot.addView(mView, new FrameLayout.LayoutParams(100, 100));
+    }
+
+    @UiThreadTest
+    public void testFirstCaptureWins() {
+        TransitionSet set = new TransitionSet();
+        set.addTransition(new Fade());
+        set.captureValues(mSceneRoot, true);
+        mView.setVisibility(View.GONE);
+        set.addTransitionAfterCapture(new Slide());
+
+        TransitionValues values = set.mStartValues.viewValues.get(mView);
+        assertEquals(View.VISIBLE, values.values.get(PROPNAME_VISIBILITY));
+    }
+
+    @UiThreadTest
+    public void testMissingPropertiesAreAdded() {
+        TransitionSet set = new TransitionSet();
+        set.addTransition(new Fade());
+        set.captureValues(mSceneRoot, true);
+        mView.setVisibility(View.GONE);
+        set.addTransitionAfterCapture(new LateTransition());
+
+        TransitionValues values = set.mStartValues.viewValues.get(mView);
+        assertEquals(View.VISIBLE, values.values.get(PROPNAME_VISIBILITY));
+        assertEquals(View.GONE, values.values.get(PROPNAME_LATE));
+        assertSame(mView, values.view);
+    }
+
+    /**
+     * Captures the visibility of the views under the name used by Visibility,
+     * and again under a name of its own.
+     */
+    private static class LateTransition extends Transition {
+        @Override
+        public void captureStartValues(TransitionValues transitionValues) {
+            captureValues(transitionValues);
+        }
+
+        @Override
+        public void captureEndValues(TransitionValues transitionValues) {
+            captureValues(transitionValues);
+        }
+
+        private static void captureValues(TransitionValues transitionValues) {
+            int visibility = transitionValues.view.getVisibility();
+            transitionValues.values.put(PROPNAME_VISIBILITY, visibility);
+            transitionValues.values.put(PROPNAME_LATE, visibility);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Runs a transition through capture, animator creation and start, and checks
+ * that none of the maps it goes through had a key set, value collection or
+ * entry set view created, which would mean an iterator was used in a hot loop.
+ */
+public class IndexedIterationTest extends InstrumentationTestCase {
+
+    @UiThreadTest
+    public void testTransitionCreatesNoIterators() throws Exception {
+        Context context = getInstrumentation().getTargetContext();
+        FrameLayout sceneRoot = new FrameLayout(context);
+        TextView[] views = new TextView[4];
+        for (int i = 0; i < views.length; i++) {
+            views[i] = new TextView(context);
+            views[i].setText("View " + i);
+            sceneRoot.addView(views[i], new FrameLayout.LayoutParams(100, 50));
+        }
+        layout(sceneRoot);
+
+        Object runningAnimators = getRunningAnimators();
+        clearCollections(runningAnimators);
+
+        AutoTransition transition = new AutoTransition();
+        transition.captureValues(sceneRoot, true);
+        views[0].setVisibility(View.GONE);
+        views[1].setLayoutParams(new FrameLayout.LayoutParams(200, 80));
+        views[2].setTranslationX(10);
+        layout(sceneRoot);
+        transition.captureValues(sceneRoot, false);
+        try {
+            transition.playTransition(sceneRoot);
+
+            assertNoCollections("running animators", runningAnimators);
+            checkValues(transition.mStartValues);
+            checkValues(transition.mEndValues);
+        } finally {
+            transition.cancel();
+        }
+    }
+
+    private static void layout(FrameLayout sceneRoot) {
+        int spec = View.MeasureSpec.makeMeasureSpec(500, View.MeasureSpec.EXACTLY);
+        sceneRoot.measure(spec, spec);
+        sceneRoot.layout(0, 0, 500, 500);
+    }
+
+    private static void checkValues(TransitionValuesMaps valuesMaps) throws Exception {
+        assertTrue(valuesMaps.viewValues.size() > 0);
+        for (int i = 0; i < valuesMaps.viewValues.size(); i++) {
+            TransitionValues values = valuesMaps.viewValues.valueAt(i);
+            assertNoCollections("values of " + values.view, values.properties);
+        }
+    }
+
+    private static Object getRunningAnimators() throws Exception {
+        // Creates the map of this thread if there was none
+        Method method = Transition.class.getDeclaredMethod("getRunningAnimators");
+        method.setAccessible(true);
+        return method.invoke(null);
+    }
+
+    /**
+     * Forgets the collection views created by earlier users of a shared map.
+     */
+    private static void clearCollections(Object map) throws Exception {
+        collectionsField(map).set(map, null);
+    }
+
+    private static void assertNoCollections(String name, Object map) throws Exception {
+        assertNull("Collections created for the " + name, collectionsField(map).get(map));
+    }
+
+    private static Field collectionsField(Object map) throws Exception {
+        Field field = map.getClass().getDeclaredField("mCollections");
+        field.setAccessible(true);
+        return field;
+    }
+}
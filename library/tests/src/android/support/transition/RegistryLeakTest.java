@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+
+/**
+ * Checks that the registries of TransitionManager, Scene and TransitionInflater
+ * do not retain the Contexts and scene roots that used them. Each Context is a
+ * ContextWrapper standing in for a short-lived component; no Activity is
+ * actually recreated.
+ */
+public class RegistryLeakTest extends InstrumentationTestCase {
+    private static final int CONTEXTS = 20;
+
+    @UiThreadTest
+    public void testRegistriesDoNotRetainRoots() {
+        ArrayList<WeakReference<Context>> contexts = new ArrayList<WeakReference<Context>>();
+        ArrayList<WeakReference<FrameLayout>> roots = new ArrayList<WeakReference<FrameLayout>>();
+        for (int i = 0; i < CONTEXTS; i++) {
+            useRegistries(contexts, roots);
+        }
+        collectGarbage(contexts);
+        for (int i = 0; i < CONTEXTS; i++) {
+            assertNull("Context " + i + " was retained", contexts.get(i).get());
+            assertNull("Scene root " + i + " was retained", roots.get(i).get());
+        }
+    }
+
+    public void testInflaterDoesNotRetainContext() {
+        ArrayList<WeakReference<Context>> contexts = new ArrayList<WeakReference<Context>>();
+        useInflater(contexts);
+        collectGarbage(contexts);
+        assertNull(contexts.get(0).get());
+    }
+
+    /**
+     * Runs a scene change and a delayed transition with a new Context and scene
+     * root, and records weak references to them. Kept out of the test method so
+     * that no local of the test frame holds on to them while collecting.
+     */
+    private void useRegistries(ArrayList<WeakReference<Context>> contexts,
+            ArrayList<WeakReference<FrameLayout>> roots) {
+        Context context = new ContextWrapper(getInstrumentation().getTargetContext());
+        FrameLayout sceneRoot = new FrameLayout(context);
+        TextView view = new TextView(context);
+        sceneRoot.addView(view);
+        contexts.add(new WeakReference<Context>(context));
+        roots.add(new WeakReference<FrameLayout>(sceneRoot));
+
+        TransitionInflater.from(context);
+        Scene scene = Scene.getSceneForLayout(sceneRoot,
+                android.R.layout.simple_list_item_1, context);
+        TransitionManager.go(scene, new ChangeBounds());
+        TransitionManager.beginDelayedTransition(sceneRoot, new Fade());
+        view.setVisibility(TextView.GONE);
+    }
+
+    private void useInflater(ArrayList<WeakReference<Context>> contexts) {
+        Context context = new ContextWrapper(getInstrumentation().getTargetContext());
+        TransitionInflater.from(context);
+        contexts.add(new WeakReference<Context>(context));
+    }
+
+    /**
+     * Runs the garbage collector until the given references are cleared, or
+     * gives up after a few attempts.
+     */
+    private static void collectGarbage(ArrayList<WeakReference<Context>> references) {
+        for (int attempt = 0; attempt < 10; attempt++) {
+            Runtime.getRuntime().gc();
+            System.runFinalization();
+            boolean cleared = true;
+            for (int i = 0; i < references.size(); i++) {
+                if (references.get(i).get() != null) {
+                    cleared = false;
+                    break;
+                }
+            }
+            if (cleared) {
+                return;
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
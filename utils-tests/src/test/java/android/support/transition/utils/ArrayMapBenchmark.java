@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how the throughput of {@link ArrayMap} scales with the number of
+ * threads, when maps small enough to go through the array caches are created
+ * and cleared in a loop, as the capture of transition values does. With
+ * per-thread caches, the throughput should grow with the number of cores.
+ */
+public class ArrayMapBenchmark {
+    private static final long DURATION_MILLIS = 1000;
+
+    @Test
+    public void throughputByThreadCount() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("ArrayMap throughput, " + cores + " cores");
+        // Warm up
+        run(1);
+        for (int threads = 1; threads <= cores * 2; threads *= 2) {
+            long maps = run(threads);
+            System.out.println(String.format("%2d threads: %10.0f maps/s", threads,
+                    maps * 1000.0 / DURATION_MILLIS));
+        }
+    }
+
+    /**
+     * Returns the number of maps created and cleared by the given number of
+     * threads in {@link #DURATION_MILLIS}.
+     */
+    private static long run(int threads) throws InterruptedException {
+        final AtomicLong total = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final long[] end = new long[1];
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long count = 0;
+                    Integer key = 1;
+                    while (System.currentTimeMillis() < end[0]) {
+                        for (int i = 0; i < 100; i++) {
+                            ArrayMap<Integer, Object> small = new ArrayMap<Integer, Object>();
+                            ArrayMap<Integer, Object> large = new ArrayMap<Integer, Object>();
+                            for (int k = 0; k < 5; k++) {
+                                if (k < 3) {
+                                    small.put(key + k, key);
+                                }
+                                large.put(key + k, key);
+                            }
+                            small.clear();
+                            large.clear();
+                        }
+                        count += 200;
+                    }
+                    total.addAndGet(count);
+                    done.countDown();
+                }
+            }).start();
+        }
+        end[0] = System.currentTimeMillis() + DURATION_MILLIS;
+        start.countDown();
+        done.await();
+        return total.get();
+    }
+}
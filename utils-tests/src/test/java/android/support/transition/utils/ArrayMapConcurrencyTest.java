@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Hammers the array caches of {@link ArrayMap} from several threads. Maps are
+ * small enough to go through the caches, and are handed between threads so that
+ * arrays freed on one thread are reused on others through the shared cache. An
+ * array given to two maps at once shows up as a map whose content changed.
+ */
+public class ArrayMapConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 20000;
+
+    // Set by the first thread that fails, so that the others stop waiting for it
+    private final AtomicReference<Throwable> mFailure = new AtomicReference<Throwable>();
+
+    @Test
+    public void recycledArraysAreNeverShared() throws Exception {
+        final BlockingQueue<ArrayMap<Integer, Integer>> handOff =
+                new ArrayBlockingQueue<ArrayMap<Integer, Integer>>(64);
+        final CountDownLatch start = new CountDownLatch(1);
+        ArrayList<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < THREADS; t++) {
+            final int seed = t;
+            final boolean producer = t % 2 == 0;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        if (producer) {
+                            produce(seed, handOff);
+                        } else {
+                            consume(seed, handOff);
+                        }
+                    } catch (Throwable e) {
+                        mFailure.compareAndSet(null, e);
+                    }
+                }
+            }));
+        }
+        for (int t = 0; t < threads.size(); t++) {
+            threads.get(t).start();
+        }
+        start.countDown();
+        for (int t = 0; t < threads.size(); t++) {
+            threads.get(t).join(TimeUnit.MINUTES.toMillis(2));
+            assertTrue("Stress thread did not finish", !threads.get(t).isAlive());
+        }
+        if (mFailure.get() != null) {
+            throw new AssertionError(mFailure.get());
+        }
+    }
+
+    /**
+     * Builds maps of 1 to 8 entries, checks them after building a few more, and
+     * passes every other one to a consumer thread that frees its arrays.
+     */
+    private void produce(int seed, BlockingQueue<ArrayMap<Integer, Integer>> handOff)
+            throws InterruptedException {
+        ArrayList<ArrayMap<Integer, Integer>> live = new ArrayList<ArrayMap<Integer, Integer>>();
+        for (int i = 0; i < ITERATIONS; i++) {
+            ArrayMap<Integer, Integer> map = fill(seed * ITERATIONS + i);
+            live.add(map);
+            if (live.size() == 4) {
+                for (int j = 0; j < live.size(); j++) {
+                    ArrayMap<Integer, Integer> liveMap = live.get(j);
+                    check(liveMap);
+                    if (j % 2 == 0) {
+                        hand(handOff, liveMap);
+                    } else {
+                        liveMap.clear();
+                    }
+                }
+                live.clear();
+            }
+        }
+        hand(handOff, new ArrayMap<Integer, Integer>());
+    }
+
+    /**
+     * Checks the maps built on other threads and frees their arrays, until the
+     * empty map ending a producer is received.
+     */
+    private void consume(int seed, BlockingQueue<ArrayMap<Integer, Integer>> handOff)
+            throws InterruptedException {
+        int i = 0;
+        while (true) {
+            ArrayMap<Integer, Integer> map = handOff.poll(100, TimeUnit.MILLISECONDS);
+            if (map == null) {
+                if (mFailure.get() != null) {
+                    return;
+                }
+                continue;
+            }
+            if (map.isEmpty()) {
+                return;
+            }
+            check(map);
+            // Build and check a map of our own with the arrays just freed
+            map.clear();
+            ArrayMap<Integer, Integer> own = fill(-(seed * ITERATIONS + i++) - 1);
+            check(own);
+            own.clear();
+        }
+    }
+
+    /**
+     * Passes a map to the consumers, unless another thread failed.
+     */
+    private void hand(BlockingQueue<ArrayMap<Integer, Integer>> handOff,
+            ArrayMap<Integer, Integer> map) throws InterruptedException {
+        while (!handOff.offer(map, 100, TimeUnit.MILLISECONDS)) {
+            if (mFailure.get() != null) {
+                throw new InterruptedException("Another stress thread failed");
+            }
+        }
+    }
+
+    /**
+     * Returns a map of 1 to 8 entries derived from the given id, which every
+     * key and value encodes so that {@link #check(ArrayMap)} can validate it.
+     */
+    private static ArrayMap<Integer, Integer> fill(int id) {
+        ArrayMap<Integer, Integer> map = new ArrayMap<Integer, Integer>();
+        int size = 1 + (id & 7);
+        for (int k = 0; k < size; k++) {
+            map.put(id * 8 + k, id);
+        }
+        return map;
+    }
+
+    private static void check(ArrayMap<Integer, Integer> map) {
+        int size = map.size();
+        int id = map.valueAt(0);
+        assertEquals(1 + (id & 7), size);
+        for (int k = 0; k < size; k++) {
+            assertEquals(Integer.valueOf(id), map.get(id * 8 + k));
+            assertEquals(Integer.valueOf(id), map.valueAt(k));
+        }
+    }
+
+    @Test
+    public void sharedCacheHoldsDistinctArrays() throws Exception {
+        // Overflow the thread caches of several threads into the shared caches
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        ArrayList<ArrayMap<Integer, Integer>> maps =
+                                new ArrayList<ArrayMap<Integer, Integer>>();
+                        for (int i = 0; i < 100; i++) {
+                            maps.add(fill(i));
+                        }
+                        for (int i = 0; i < maps.size(); i++) {
+                            maps.get(i).clear();
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        assertDistinct(ArrayMap.sSharedBaseCache);
+        assertDistinct(ArrayMap.sSharedTwiceBaseCache);
+    }
+
+    private static void assertDistinct(AtomicReferenceArray<Object[]> cache) {
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        for (int i = 0; i < cache.length(); i++) {
+            Object[] array = cache.get(i);
+            if (array != null) {
+                assertTrue("Array cached twice", seen.add(array));
+                assertTrue("Hashes cached twice", seen.add(array[1]));
+                assertNull("Cached array still linked", array[0]);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class IdentityArrayMapTest {
+
+    @Test
+    public void batchKeepsLastValueAndFirstInsertionOrder() {
+        // Below and above the size at which the hash table is used
+        int[] sizes = {5, IdentityArrayMap.HASH_THRESHOLD * 3};
+        for (int s = 0; s < sizes.length; s++) {
+            int size = sizes[s];
+            Object[] keys = new Object[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = new Object();
+            }
+            IdentityArrayMap<Object, Integer> map = new IdentityArrayMap<Object, Integer>();
+            map.beginBatch();
+            for (int i = 0; i < size; i++) {
+                map.put(keys[i], i);
+            }
+            map.put(keys[1], 100);
+            map.put(keys[0], 200);
+            map.put(keys[1], 101);
+            map.put(keys[size - 1], 300);
+            map.put(keys[1], 102);
+            map.endBatch();
+
+            assertEquals(size, map.size());
+            assertEquals(Integer.valueOf(102), map.get(keys[1]));
+            assertEquals(Integer.valueOf(200), map.get(keys[0]));
+            assertEquals(Integer.valueOf(300), map.get(keys[size - 1]));
+            for (int i = 0; i < size; i++) {
+                assertSame(keys[i], map.keyAt(i));
+                assertEquals(i, map.indexOfKey(keys[i]));
+            }
+        }
+    }
+
+    @Test
+    public void batchOnTopOfExistingMappings() {
+        Object a = new Object();
+        Object b = new Object();
+        Object c = new Object();
+        IdentityArrayMap<Object, String> map = new IdentityArrayMap<Object, String>();
+        map.put(a, "a");
+        map.beginBatch();
+        map.put(b, "b");
+        map.put(a, "a2");
+        map.put(c, "c");
+        map.put(b, "b2");
+        map.put(a, "a3");
+        // Queries merge the pending mappings before the batch ends
+        assertEquals(3, map.size());
+        assertEquals("a3", map.get(a));
+        map.put(c, "c2");
+        map.endBatch();
+        assertEquals(3, map.size());
+        assertSame(a, map.keyAt(0));
+        assertSame(b, map.keyAt(1));
+        assertSame(c, map.keyAt(2));
+        assertEquals("b2", map.get(b));
+        assertEquals("c2", map.get(c));
+    }
+
+    @Test
+    public void removeAtMovesLastMapping() {
+        Object[] keys = new Object[40];
+        IdentityArrayMap<Object, Integer> map = new IdentityArrayMap<Object, Integer>();
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new Object();
+            map.put(keys[i], i);
+        }
+        map.remove(keys[3]);
+        assertEquals(39, map.size());
+        assertSame(keys[39], map.keyAt(3));
+        assertNull(map.get(keys[3]));
+        for (int i = 0; i < keys.length; i++) {
+            if (i != 3) {
+                assertEquals(Integer.valueOf(i), map.get(keys[i]));
+            }
+        }
+    }
+}
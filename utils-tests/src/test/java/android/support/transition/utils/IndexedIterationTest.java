@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition.utils;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the indexed traversal of the transition maps, and the bulk
+ * operations built on it, never create the key set, value collection or entry
+ * set views, nor the iterators that come with them.
+ */
+public class IndexedIterationTest {
+
+    @Test
+    public void arrayMapIndexedAccessCreatesNoCollections() {
+        ArrayMap<String, Integer> map = new ArrayMap<String, Integer>();
+        for (int i = 0; i < 10; i++) {
+            map.put("key" + i, i);
+        }
+        int sum = 0;
+        for (int i = 0; i < map.size(); i++) {
+            assertNotNull(map.keyAt(i));
+            sum += map.valueAt(i);
+        }
+        assertEquals(45, sum);
+
+        ArrayMap<String, Integer> copy = new ArrayMap<String, Integer>();
+        copy.putAll((Map<String, Integer>) map);
+        assertTrue(copy.equals(map));
+        assertEquals(map.hashCode(), copy.hashCode());
+        map.toString();
+        assertNull(map.mCollections);
+        assertNull(copy.mCollections);
+
+        // The views are still available, and are what the check above looks for
+        map.keySet().iterator();
+        assertNotNull(map.mCollections);
+    }
+
+    @Test
+    public void propertyMapIndexedAccessCreatesNoCollections() {
+        int alpha = PropertyKeyRegistry.register("test:iteration:alpha");
+        int bounds = PropertyKeyRegistry.register("test:iteration:bounds");
+        PropertyMap map = new PropertyMap();
+        map.put(alpha, 0.5f);
+        map.put(bounds, "bounds");
+        PropertyMap other = new PropertyMap();
+        other.putAll(map);
+        for (int i = 0; i < map.size(); i++) {
+            assertEquals(map.valueAt(i), other.get(map.propertyKeyAt(i)));
+            assertNotNull(map.keyAt(i));
+        }
+        assertTrue(map.equals(other));
+        assertEquals(map.hashCode(), other.hashCode());
+        map.toString();
+        assertNull(map.mCollections);
+        assertNull(other.mCollections);
+    }
+}
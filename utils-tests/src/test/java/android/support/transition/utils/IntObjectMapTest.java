@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IntObjectMapTest {
+
+    @Test
+    public void putGetAndReplace() {
+        IntObjectMap<String> map = new IntObjectMap<String>();
+        map.put(3, "a");
+        map.put(-7, "b");
+        map.put(0, "c");
+        assertEquals(3, map.size());
+        assertEquals("a", map.get(3));
+        assertEquals("b", map.get(-7));
+        assertEquals("c", map.get(0));
+        assertNull(map.get(4));
+        assertEquals("d", map.get(4, "d"));
+
+        map.put(-7, "e");
+        assertEquals(3, map.size());
+        assertEquals("e", map.get(-7));
+        // Insertion order
+        assertEquals(3, map.keyAt(0));
+        assertEquals(-7, map.keyAt(1));
+        assertEquals(0, map.keyAt(2));
+    }
+
+    @Test
+    public void removeAtMovesLastMapping() {
+        IntObjectMap<String> map = new IntObjectMap<String>();
+        for (int i = 0; i < 5; i++) {
+            map.put(i * 10, "v" + i);
+        }
+        map.removeAt(1);
+        assertEquals(4, map.size());
+        assertEquals(40, map.keyAt(1));
+        assertEquals("v4", map.valueAt(1));
+        assertEquals(1, map.indexOfKey(40));
+        assertTrue(map.indexOfKey(10) < 0);
+        map.remove(0);
+        assertEquals(3, map.size());
+        assertEquals(30, map.keyAt(0));
+        assertEquals("v3", map.get(30));
+    }
+
+    @Test
+    public void collidingKeysSurviveRemoval() {
+        // Keys that are multiples of a large power of two share their low bits
+        IntObjectMap<Integer> map = new IntObjectMap<Integer>();
+        for (int i = 0; i < 64; i++) {
+            map.put(i << 20, i);
+        }
+        for (int i = 0; i < 64; i += 2) {
+            map.remove(i << 20);
+        }
+        assertEquals(32, map.size());
+        for (int i = 0; i < 64; i++) {
+            if (i % 2 == 0) {
+                assertNull(map.get(i << 20));
+            } else {
+                assertEquals(Integer.valueOf(i), map.get(i << 20));
+            }
+        }
+    }
+
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(42);
+        IntObjectMap<Integer> map = new IntObjectMap<Integer>();
+        HashMap<Integer, Integer> reference = new HashMap<Integer, Integer>();
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(2000) - 1000;
+            int op = random.nextInt(3);
+            if (op < 2) {
+                map.put(key, i);
+                reference.put(key, i);
+            } else {
+                map.remove(key);
+                reference.remove(key);
+            }
+        }
+        assertEquals(reference.size(), map.size());
+        for (int key = -1000; key < 1000; key++) {
+            assertEquals(reference.get(key), map.get(key));
+        }
+        for (int i = 0; i < map.size(); i++) {
+            assertEquals(i, map.indexOfKey(map.keyAt(i)));
+        }
+    }
+
+    @Test
+    public void copyKeepsMappingsButNotMarks() {
+        IntObjectMap<String> map = new IntObjectMap<String>();
+        for (int i = 0; i < 20; i++) {
+            map.put(i * 3, "v" + i);
+        }
+        map.mark(2);
+        IntObjectMap<String> copy = new IntObjectMap<String>(map);
+        assertEquals(map.size(), copy.size());
+        for (int i = 0; i < map.size(); i++) {
+            assertEquals(map.keyAt(i), copy.keyAt(i));
+            assertSame(map.valueAt(i), copy.valueAt(i));
+            assertFalse(copy.isMarkedAt(i));
+        }
+        // The copy is independent
+        copy.put(1000, "x");
+        copy.remove(0);
+        assertNull(map.get(1000));
+        assertEquals("v0", map.get(0));
+        assertEquals(20, map.size());
+    }
+
+    @Test
+    public void marksFollowTheirMappings() {
+        IntObjectMap<String> map = new IntObjectMap<String>();
+        for (int i = 0; i < 6; i++) {
+            map.put(i, "v" + i);
+        }
+        map.mark(5);
+        map.mark(0);
+        assertTrue(map.isMarkedAt(0));
+        assertFalse(map.isMarkedAt(1));
+        // The last, marked mapping takes the index of the removed one
+        map.removeAt(1);
+        assertTrue(map.isMarkedAt(1));
+        assertEquals(5, map.keyAt(1));
+        // Marks grow with the map
+        for (int i = 6; i < 40; i++) {
+            map.put(i, "v" + i);
+        }
+        map.mark(map.size() - 1);
+        assertTrue(map.isMarkedAt(map.size() - 1));
+        map.clearMarks();
+        for (int i = 0; i < map.size(); i++) {
+            assertFalse(map.isMarkedAt(i));
+        }
+    }
+
+    @Test
+    public void clearEmptiesTheMap() {
+        IntObjectMap<String> map = new IntObjectMap<String>(4);
+        ArrayList<Integer> keys = new ArrayList<Integer>();
+        for (int i = 0; i < 30; i++) {
+            map.put(i, "v" + i);
+            keys.add(i);
+        }
+        map.mark(3);
+        map.clear();
+        assertEquals(0, map.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertNull(map.get(keys.get(i)));
+        }
+        map.put(5, "again");
+        assertEquals("again", map.get(5));
+        assertFalse(map.isMarkedAt(0));
+        assertEquals("{5=again}", map.toString());
+    }
+}
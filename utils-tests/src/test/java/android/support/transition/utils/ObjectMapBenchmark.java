@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition.utils;
+
+import android.support.v4.util.LongSparseArray;
+import android.support.v4.util.SparseArrayCompat;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Compares {@link IntObjectMap} and {@link LongObjectMap} with the sorted
+ * SparseArray and LongSparseArray they replace for the id and item id values,
+ * on the operations of a transition: filling the map in hierarchy order, where
+ * ids are not sorted, copying it, and looking up and removing every key.
+ */
+public class ObjectMapBenchmark {
+    private static final int[] SIZES = {10, 1000, 10000};
+    private static final long TARGET_NANOS = 200L * 1000 * 1000;
+
+    @Test
+    public void intKeys() {
+        for (int s = 0; s < SIZES.length; s++) {
+            final int[] keys = randomKeys(SIZES[s]);
+            final Object value = new Object();
+            report("IntObjectMap", keys.length, measure(new Runnable() {
+                @Override
+                public void run() {
+                    IntObjectMap<Object> map = new IntObjectMap<Object>();
+                    for (int i = 0; i < keys.length; i++) {
+                        map.put(keys[i], value);
+                    }
+                    IntObjectMap<Object> copy = new IntObjectMap<Object>(map);
+                    for (int i = 0; i < keys.length; i++) {
+                        int index = copy.indexOfKey(keys[i]);
+                        if (index >= 0) {
+                            copy.removeAt(index);
+                        }
+                    }
+                }
+            }));
+            report("SparseArrayCompat", keys.length, measure(new Runnable() {
+                @Override
+                public void run() {
+                    SparseArrayCompat<Object> map = new SparseArrayCompat<Object>();
+                    for (int i = 0; i < keys.length; i++) {
+                        map.put(keys[i], value);
+                    }
+                    // Copied element by element, as createAnimators did
+                    SparseArrayCompat<Object> copy = new SparseArrayCompat<Object>();
+                    for (int i = 0; i < map.size(); i++) {
+                        copy.put(map.keyAt(i), map.valueAt(i));
+                    }
+                    for (int i = 0; i < keys.length; i++) {
+                        int index = copy.indexOfKey(keys[i]);
+                        if (index >= 0) {
+                            copy.removeAt(index);
+                        }
+                    }
+                }
+            }));
+        }
+    }
+
+    @Test
+    public void longKeys() {
+        for (int s = 0; s < SIZES.length; s++) {
+            final int[] intKeys = randomKeys(SIZES[s]);
+            final long[] keys = new long[intKeys.length];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = intKeys[i] * 0x100000001L;
+            }
+            final Object value = new Object();
+            report("LongObjectMap", keys.length, measure(new Runnable() {
+                @Override
+                public void run() {
+                    LongObjectMap<Object> map = new LongObjectMap<Object>();
+                    for (int i = 0; i < keys.length; i++) {
+                        map.put(keys[i], value);
+                    }
+                    LongObjectMap<Object> copy = new LongObjectMap<Object>(map);
+                    for (int i = 0; i < keys.length; i++) {
+                        int index = copy.indexOfKey(keys[i]);
+                        if (index >= 0) {
+                            copy.removeAt(index);
+                        }
+                    }
+                }
+            }));
+            report("LongSparseArray", keys.length, measure(new Runnable() {
+                @Override
+                public void run() {
+                    LongSparseArray<Object> map = new LongSparseArray<Object>();
+                    for (int i = 0; i < keys.length; i++) {
+                        map.put(keys[i], value);
+                    }
+                    LongSparseArray<Object> copy = new LongSparseArray<Object>();
+                    for (int i = 0; i < map.size(); i++) {
+                        copy.put(map.keyAt(i), map.valueAt(i));
+                    }
+                    for (int i = 0; i < keys.length; i++) {
+                        int index = copy.indexOfKey(keys[i]);
+                        if (index >= 0) {
+                            copy.removeAt(index);
+                        }
+                    }
+                }
+            }));
+        }
+    }
+
+    private static int[] randomKeys(int size) {
+        // Distinct ids in no particular order, like the ids of a view hierarchy
+        int[] keys = new int[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = 0x7f080000 + i;
+        }
+        Random random = new Random(size);
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int key = keys[i];
+            keys[i] = keys[j];
+            keys[j] = key;
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the average time of one run, in nanoseconds, after a warm-up.
+     */
+    static double measure(Runnable runnable) {
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < TARGET_NANOS) {
+            runnable.run();
+        }
+        int runs = 0;
+        start = System.nanoTime();
+        long elapsed;
+        do {
+            runnable.run();
+            runs++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < TARGET_NANOS);
+        return (double) elapsed / runs;
+    }
+
+    private static void report(String name, int size, double nanos) {
+        System.out.println(String.format("%-20s %6d entries: %12.1f us", name, size,
+                nanos / 1000));
+    }
+}
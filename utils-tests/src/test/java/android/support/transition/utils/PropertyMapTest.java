@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.transition.utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PropertyMapTest {
+
+    @Test
+    public void namesAndKeysReachTheSameValues() {
+        int key = PropertyKeyRegistry.register("test:propertyMap:alpha");
+        PropertyMap map = new PropertyMap();
+        map.put("test:propertyMap:alpha", 0.5f);
+        assertEquals(0.5f, map.get(key));
+        map.put(key, 1f);
+        assertEquals(1f, map.get("test:propertyMap:alpha"));
+        assertEquals(1, map.size());
+        assertEquals("test:propertyMap:alpha", map.keyAt(0));
+        assertEquals(key, map.propertyKeyAt(0));
+        // Names never registered are simply absent
+        assertNull(map.get("test:propertyMap:unknown"));
+        assertFalse(map.containsKey("test:propertyMap:unknown"));
+        assertNull(map.get(Integer.valueOf(key)));
+    }
+
+    @Test
+    public void nullNameIsAKey() {
+        PropertyMap map = new PropertyMap();
+        map.put((String) null, "null");
+        map.put("test:propertyMap:other", "other");
+        assertTrue(map.containsKey(null));
+        assertEquals("null", map.get(null));
+        assertEquals("null", map.get(PropertyKeyRegistry.NULL_KEY));
+        assertNull(map.keyAt(0));
+
+        Map<String, Object> reference = new HashMap<String, Object>();
+        reference.put(null, "null");
+        reference.put("test:propertyMap:other", "other");
+        assertTrue(map.equals(reference));
+        assertEquals(reference.hashCode(), map.hashCode());
+        map.toString();
+
+        assertEquals("null", map.remove(null));
+        assertFalse(map.containsKey(null));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void equalsComparesByKey() {
+        int a = PropertyKeyRegistry.register("test:propertyMap:a");
+        int b = PropertyKeyRegistry.register("test:propertyMap:b");
+        PropertyMap first = new PropertyMap();
+        first.put(a, 1);
+        first.put(b, 2);
+        PropertyMap second = new PropertyMap();
+        second.put(b, 2);
+        second.put(a, 1);
+        assertTrue(first.equals(second));
+        assertEquals(first.hashCode(), second.hashCode());
+        second.put(a, 3);
+        assertFalse(first.equals(second));
+        second.removeAt(0);
+        assertFalse(first.equals(second));
+    }
+}